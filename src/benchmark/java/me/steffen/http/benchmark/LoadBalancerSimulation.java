@@ -0,0 +1,102 @@
+package me.steffen.http.benchmark;
+
+import me.steffen.http.fixture.Endpoint;
+import me.steffen.http.fixture.LoadBalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compares the {@link LoadBalancer} strategies in a discrete event simulation without any network access. The
+ * requests arrive as a poisson process and are distributed over the endpoints. Every endpoint serves its requests
+ * in parallel, but the latency grows with the number of requests in flight (a simple queueing model). One endpoint is
+ * degraded and has a multiple of the normal service time.
+ * <p>
+ * Usage: <code>LoadBalancerSimulation [endpoints] [requests] [requestsPerSecond] [degradedFactor]</code>
+ */
+public class LoadBalancerSimulation
+{
+    private static final double SERVICE_TIME_MS = 10.0;
+
+    // requests in flight an endpoint can handle without additional latency
+    private static final int CAPACITY = 8;
+
+    private static class Completion
+    {
+        private final double   time;
+        private final Endpoint endpoint;
+        private final long     latency;
+
+        private Completion( double time, Endpoint endpoint, long latency )
+        {
+            this.time = time;
+            this.endpoint = endpoint;
+            this.latency = latency;
+        }
+    }
+
+    private static double percentile( long[] sorted, double q )
+    {
+        return sorted[Math.min( sorted.length - 1, (int) Math.ceil( q * sorted.length ) - 1 )];
+    }
+
+    public static void run( String strategy, int endpointCount, int requests, double rate, double degradedFactor )
+    {
+        Random                    random    = new Random( 42 );
+        LoadBalancer              lb        = LoadBalancer.create( strategy );
+        List<Endpoint>            endpoints = new ArrayList<>();
+        PriorityQueue<Completion> pending   = new PriorityQueue<>( ( a, b ) -> Double.compare( a.time, b.time ) );
+        for ( int i = 0; i < endpointCount; ++i )
+        {
+            endpoints.add( new Endpoint( "sim://endpoint-" + i ) );
+        }
+
+        long[] latencies = new long[requests];
+        double now       = 0;
+        for ( int i = 0; i < requests; ++i )
+        {
+            now += -Math.log( 1 - random.nextDouble() ) * 1000.0 / rate;
+            while ( !pending.isEmpty() && pending.peek().time <= now )
+            {
+                Completion c = pending.poll();
+                c.endpoint.end( c.latency, true );
+            }
+
+            Endpoint e       = lb.select( endpoints );
+            double   service = SERVICE_TIME_MS * ( e == endpoints.get( 0 ) ? degradedFactor : 1.0 );
+            double   latency = service * ( -Math.log( 1 - random.nextDouble() ) ) * ( 1.0 + (double) e.getInFlight()
+                    / CAPACITY );
+            e.begin();
+            latencies[i] = Math.round( latency );
+            pending.add( new Completion( now + latency, e, latencies[i] ) );
+        }
+
+        Arrays.sort( latencies );
+        StringBuilder share = new StringBuilder();
+        for ( Endpoint e : endpoints )
+        {
+            share.append( String.format( " %4.1f%%", 100.0 * e.getRequests() / requests ) );
+        }
+        System.out.printf( "%-12s | mean %7.2f ms | p50 %5.0f ms | p99 %6.0f ms | p99.9 %6.0f ms | share%s%n",
+                strategy, Arrays.stream( latencies ).average().orElse( 0 ), percentile( latencies, 0.5 ),
+                percentile( latencies, 0.99 ), percentile( latencies, 0.999 ), share );
+    }
+
+    public static void main( String[] args )
+    {
+        int    endpointCount  = args.length > 0 ? Integer.parseInt( args[0] ) : 5;
+        int    requests       = args.length > 1 ? Integer.parseInt( args[1] ) : 200000;
+        double rate           = args.length > 2 ? Double.parseDouble( args[2] ) : 600;
+        double degradedFactor = args.length > 3 ? Double.parseDouble( args[3] ) : 5;
+
+        System.out.printf( "%d endpoints, %d requests, %.0f requests/s, endpoint 0 is %.1f times slower%n",
+                endpointCount, requests, rate, degradedFactor );
+        for ( String s : new String[] { "round-robin", "random", "p2c" } )
+        {
+            run( s, endpointCount, requests, rate, degradedFactor );
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package me.steffen.http.benchmark;
+
+import me.steffen.http.common.Function;
+import me.steffen.http.fixture.HttpClient;
+import me.steffen.http.fixture.HttpClientArgs;
+import me.steffen.http.fixture.HttpRequest;
+import me.steffen.http.fixture.MultipartBody;
+import me.steffen.http.fixture.ResponseData;
+import org.apache.http.entity.ContentType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the peak heap usage of a multipart upload against an in-process server which discards the body.
+ * <ul>
+ * <li>streamed: a {@link MultipartBody} with a file part of the given size (a sparse temporary file), two text
+ * parts and a generated part</li>
+ * <li>string: the former way, the whole payload is built as one string for {@link HttpRequest#setTextBody}, done
+ * with a smaller size because it needs a multiple of the payload on the heap</li>
+ * </ul>
+ * The peak is taken from the heap memory pools after a GC, run it with a fixed heap (i.e. -Xmx512m) to see that the
+ * streamed upload is independent of the payload size.
+ * <p>
+ * Usage: <code>MultipartUploadBenchmark [streamedMb] [stringMb]</code>
+ */
+public class MultipartUploadBenchmark
+        implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger( MultipartUploadBenchmark.class );
+
+    private static final long MB = 1024 * 1024;
+
+    private final ServerSocket serverSocket;
+
+    // daemon threads, a worker blocks in the read of a kept alive connection
+    private final ExecutorService workers = Executors.newCachedThreadPool(
+            Function.daemonThreadFactory( "multipart-benchmark" ) );
+
+    public MultipartUploadBenchmark() throws IOException
+    {
+        serverSocket = new ServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+        workers.execute( this::acceptLoop );
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop()
+    {
+        while ( !serverSocket.isClosed() )
+        {
+            try
+            {
+                Socket s = serverSocket.accept();
+                workers.execute( () -> serve( s ) );
+            }
+            catch ( IOException e )
+            {
+                if ( !serverSocket.isClosed() )
+                {
+                    LOGGER.error( e );
+                }
+            }
+        }
+    }
+
+    private static String readLine( InputStream in ) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int                   c;
+        while ( ( c = in.read() ) >= 0 && c != '\n' )
+        {
+            if ( c != '\r' )
+            {
+                line.write( c );
+            }
+        }
+
+        return c < 0 && line.size() == 0 ? null : line.toString( StandardCharsets.US_ASCII );
+    }
+
+    private static long skip( InputStream in, long n ) throws IOException
+    {
+        byte[] buffer = new byte[64 * 1024];
+        long   done   = 0;
+        while ( done < n )
+        {
+            int r = in.read( buffer, 0, (int) Math.min( buffer.length, n - done ) );
+            if ( r < 0 )
+            {
+                break;
+            }
+            done += r;
+        }
+
+        return done;
+    }
+
+    // reads the requests and discards the bodies (Content-Length or chunked), answers with the number of bytes
+    private void serve( Socket socket )
+    {
+        try (Socket s = socket)
+        {
+            s.setTcpNoDelay( true );
+            InputStream  in  = new BufferedInputStream( s.getInputStream(), 64 * 1024 );
+            OutputStream out = new BufferedOutputStream( s.getOutputStream() );
+            while ( null != readLine( in ) )
+            {
+                long    length  = 0;
+                boolean chunked = false;
+                String  line;
+                while ( null != ( line = readLine( in ) ) && !line.isEmpty() )
+                {
+                    String l = line.toLowerCase( Locale.ROOT );
+                    if ( l.startsWith( "content-length:" ) )
+                    {
+                        length = Long.parseLong( l.substring( 15 ).trim() );
+                    }
+                    else if ( l.startsWith( "transfer-encoding:" ) && l.contains( "chunked" ) )
+                    {
+                        chunked = true;
+                    }
+                }
+
+                long received = 0;
+                if ( chunked )
+                {
+                    long size;
+                    while ( ( size = Long.parseLong( readLine( in ).split( ";" )[0].trim(), 16 ) ) > 0 )
+                    {
+                        received += skip( in, size );
+                        readLine( in );
+                    }
+                    while ( null != ( line = readLine( in ) ) && !line.isEmpty() )
+                    {
+                        // trailers
+                    }
+                }
+                else
+                {
+                    received = skip( in, length );
+                }
+
+                byte[] body = Long.toString( received ).getBytes( StandardCharsets.US_ASCII );
+                out.write( ( "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length
+                        + "\r\n\r\n" ).getBytes( StandardCharsets.US_ASCII ) );
+                out.write( body );
+                out.flush();
+            }
+        }
+        catch ( SocketException e )
+        {
+            // client closed the connection
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            LOGGER.warn( "benchmark server: {}", e.getMessage() );
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools()
+    {
+        return ManagementFactory
+                .getMemoryPoolMXBeans()
+                .stream()
+                .filter( p -> p.getType() == MemoryType.HEAP )
+                .collect( Collectors.toList() );
+    }
+
+    private static long resetPeak()
+    {
+        System.gc();
+        heapPools().forEach( MemoryPoolMXBean::resetPeakUsage );
+        return heapPools().stream().mapToLong( p -> p.getUsage().getUsed() ).sum();
+    }
+
+    private static long peak()
+    {
+        return heapPools().stream().mapToLong( p -> p.getPeakUsage().getUsed() ).sum();
+    }
+
+    private void report( String name, long payload, long baseline, long t, ResponseData rd )
+    {
+        double seconds = ( System.nanoTime() - t ) / 1e9;
+        System.out.printf( "%-8s | payload %6d MB | sent %6d MB | %7.1f MB/s | peak heap +%6.1f MB | status %d%n",
+                name, payload / MB, Long.parseLong( "0" + rd.getResponseContent().trim() ) / MB,
+                payload / seconds / MB, ( peak() - baseline ) / (double) MB, rd.getStatus() );
+    }
+
+    public void streamed( HttpClient client, long size ) throws IOException
+    {
+        Path file = Files.createTempFile( "multipart-benchmark", ".bin" );
+        try
+        {
+            try (RandomAccessFile raf = new RandomAccessFile( file.toFile(), "rw" ))
+            {
+                raf.setLength( size );
+            }
+
+            byte[] row = "line of a generated csv part\n".getBytes( StandardCharsets.US_ASCII );
+            MultipartBody body = new MultipartBody()
+                    .addText( "title", "document bundle" )
+                    .addText( "meta", "{\"pages\":42}", ContentType.APPLICATION_JSON )
+                    .addFile( "document", file, ContentType.create( "application/pdf" ) )
+                    .addGenerated( "index", "index.csv", out -> {
+                        for ( int i = 0; i < 100000; ++i )
+                        {
+                            out.write( row );
+                        }
+                    }, 100000L * row.length, ContentType.create( "text/csv" ) );
+
+            long         baseline = resetPeak();
+            long         t        = System.nanoTime();
+            ResponseData rd       = client.execute( "bench", null, "/upload",
+                    new HttpRequest().setMethod( "POST" ).setMultipartBody( body ) );
+            report( "streamed", body.getContentLength(), baseline, t, rd );
+        }
+        finally
+        {
+            Files.deleteIfExists( file );
+        }
+    }
+
+    public void string( HttpClient client, long size )
+    {
+        long   baseline = resetPeak();
+        long   t        = System.nanoTime();
+        char[] content  = new char[(int) size];
+        Arrays.fill( content, 'x' );
+        String payload = "--b\r\nContent-Disposition: form-data; name=\"document\"; filename=\"doc.pdf\"\r\n\r\n"
+                + new String( content ) + "\r\n--b--\r\n";
+        content = null;
+        ResponseData rd = client.execute( "bench", null, "/upload", new HttpRequest()
+                .setMethod( "POST" )
+                .addHeaderEntry( "Content-Type", "multipart/form-data; boundary=b" )
+                .setTextBody( payload ) );
+        report( "string", payload.length(), baseline, t, rd );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        long streamedMb = args.length > 0 ? Long.parseLong( args[0] ) : 1024;
+        long stringMb   = args.length > 1 ? Long.parseLong( args[1] ) : 64;
+
+        System.out.printf( "max heap %d MB%n", Runtime.getRuntime().maxMemory() / MB );
+        try (MultipartUploadBenchmark b = new MultipartUploadBenchmark())
+        {
+            HttpClient client = HttpClient.build( new HttpClientArgs().configFile( "" ), null );
+            client.putHost( "bench", "http", "localhost", b.getPort() );
+
+            b.streamed( client, streamedMb * MB );
+            b.string( client, stringMb * MB );
+        }
+    }
+}
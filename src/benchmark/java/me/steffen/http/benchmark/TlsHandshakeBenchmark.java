@@ -0,0 +1,226 @@
+package me.steffen.http.benchmark;
+
+import me.steffen.http.fixture.EnumTlsProfile;
+import me.steffen.http.fixture.HttpClient;
+import me.steffen.http.fixture.HttpClientArgs;
+import me.steffen.http.fixture.HttpRequest;
+import me.steffen.http.fixture.ResponseData;
+import me.steffen.http.security.JksManager;
+import me.steffen.http.security.JksManagerArgs;
+import me.steffen.http.security.SecurityHelper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the handshake latency and the throughput of every {@link EnumTlsProfile} against an in-process TLS
+ * server. The server uses the key material of a {@link JksManager}, the client trusts the server certificate by the
+ * truststore or (if no truststore is configured) by the keystore itself.
+ * <p>
+ * Usage: <code>TlsHandshakeBenchmark &lt;jks-manager-config.json&gt; [handshakes] [transfers] [payloadKb]</code>
+ * <ul>
+ * <li>handshake latency: every request uses a new connection (<code>Connection: close</code>), so the time
+ * contains TCP connect, TLS handshake and a small request</li>
+ * <li>throughput: a single kept alive connection transfers the payload repeatedly</li>
+ * </ul>
+ */
+public class TlsHandshakeBenchmark
+        implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger( TlsHandshakeBenchmark.class );
+
+    private final SSLServerSocket serverSocket;
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    private final byte[] payload;
+
+    private volatile String lastNegotiated = "";
+
+    public TlsHandshakeBenchmark( JksManager jksManager, int payloadSize ) throws IOException
+    {
+        SSLContext serverContext = SecurityHelper.getSslContext( jksManager, false, null );
+        serverSocket = (SSLServerSocket) serverContext
+                .getServerSocketFactory()
+                .createServerSocket( 0, 50, InetAddress.getLoopbackAddress() );
+        SSLParameters sp = serverSocket.getSSLParameters();
+        sp.setProtocols( serverContext.getSupportedSSLParameters().getProtocols() );
+        sp.setApplicationProtocols( new String[] { "http/1.1" } );
+        serverSocket.setSSLParameters( sp );
+
+        payload = new byte[payloadSize];
+        Arrays.fill( payload, (byte) 'x' );
+
+        workers.execute( this::acceptLoop );
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop()
+    {
+        while ( !serverSocket.isClosed() )
+        {
+            try
+            {
+                SSLSocket s = (SSLSocket) serverSocket.accept();
+                workers.execute( () -> serve( s ) );
+            }
+            catch ( IOException e )
+            {
+                if ( !serverSocket.isClosed() )
+                {
+                    LOGGER.error( e );
+                }
+            }
+        }
+    }
+
+    private void serve( SSLSocket socket )
+    {
+        try (SSLSocket s = socket)
+        {
+            s.setTcpNoDelay( true );
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader( s.getInputStream(), StandardCharsets.US_ASCII ) );
+            OutputStream out = new BufferedOutputStream( s.getOutputStream(), 64 * 1024 );
+
+            SSLSession session = s.getSession();
+            lastNegotiated = session.getProtocol() + " " + session.getCipherSuite() + " alpn="
+                    + s.getApplicationProtocol();
+
+            boolean keepAlive = true;
+            while ( keepAlive )
+            {
+                String requestLine = in.readLine();
+                if ( null == requestLine )
+                {
+                    return;
+                }
+
+                String line;
+                while ( null != ( line = in.readLine() ) && !line.isEmpty() )
+                {
+                    if ( line.equalsIgnoreCase( "Connection: close" ) )
+                    {
+                        keepAlive = false;
+                    }
+                }
+
+                byte[] body = requestLine.contains( "/payload" ) ? payload : new byte[0];
+                out.write( ( "HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\nContent-Length: "
+                        + body.length + "\r\n" + ( keepAlive ? "" : "Connection: close\r\n" ) + "\r\n" ).getBytes(
+                        StandardCharsets.US_ASCII ) );
+                out.write( body );
+                out.flush();
+            }
+        }
+        catch ( SocketException e )
+        {
+            // client closed the connection
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "benchmark server: {}", e.getMessage() );
+        }
+    }
+
+    private static double percentile( long[] sorted, double q )
+    {
+        return sorted[Math.min( sorted.length - 1, (int) Math.ceil( q * sorted.length ) - 1 )] / 1000.0;
+    }
+
+    public void run( JksManager jksManager, EnumTlsProfile profile, int handshakes, int transfers )
+    {
+        HttpClientArgs args = new HttpClientArgs()
+                .configFile( "" )
+                .hostnameVerifier( "noop" )
+                .clientCertAlias( null )
+                .tlsProfile( profile )
+                .keystoreContainsCertificates( jksManager.args().truststore().isEmpty() );
+
+        HttpClient client = HttpClient.build( args, jksManager );
+        client.putHost( "bench", "https", "localhost", getPort() );
+        lastNegotiated = "";
+
+        long[] times  = new long[handshakes];
+        int    errors = 0;
+        for ( int i = 0; i < handshakes; ++i )
+        {
+            HttpRequest r = new HttpRequest().setMethod( "GET" ).addHeaderEntry( "Connection", "close" );
+            long        t = System.nanoTime();
+            ResponseData rd = client.execute( "bench", null, "/ping", r );
+            times[i] = ( System.nanoTime() - t ) / 1000;
+            errors += rd.getStatus() == 200 ? 0 : 1;
+        }
+        Arrays.sort( times );
+
+        long bytes = 0;
+        long t     = System.nanoTime();
+        for ( int i = 0; i < transfers; ++i )
+        {
+            ResponseData rd = client.execute( "bench", null, "/payload", new HttpRequest().setMethod( "GET" ) );
+            bytes += rd.getResponseContent().length();
+            errors += rd.getStatus() == 200 ? 0 : 1;
+        }
+        double seconds = ( System.nanoTime() - t ) / 1e9;
+
+        System.out.printf( "%-15s | p50 %7.2f ms | p90 %7.2f ms | p99 %7.2f ms | %8.1f MB/s | errors %d | %s%n",
+                profile, percentile( times, 0.5 ), percentile( times, 0.9 ), percentile( times, 0.99 ),
+                bytes / seconds / ( 1024 * 1024 ), errors, lastNegotiated );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+
+    public static void main( String[] args ) throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.out.println(
+                    "usage: TlsHandshakeBenchmark <jks-manager-config.json> [handshakes] [transfers] [payloadKb]" );
+            return;
+        }
+
+        int handshakes = args.length > 1 ? Integer.parseInt( args[1] ) : 200;
+        int transfers  = args.length > 2 ? Integer.parseInt( args[2] ) : 50;
+        int payloadKb  = args.length > 3 ? Integer.parseInt( args[3] ) : 1024;
+
+        JksManager jksManager = new JksManager( new JksManagerArgs().configFile( args[0] ) );
+
+        try (TlsHandshakeBenchmark bench = new TlsHandshakeBenchmark( jksManager, payloadKb * 1024 ))
+        {
+            // warm up the JIT and the crypto providers
+            bench.run( jksManager, EnumTlsProfile.JVM_DEFAULT, handshakes / 2 + 1, transfers / 2 + 1 );
+            System.out.println( "-------------------------------------------------------------------------------" );
+
+            for ( EnumTlsProfile p : EnumTlsProfile.values() )
+            {
+                bench.run( jksManager, p, handshakes, transfers );
+            }
+        }
+    }
+}
@@ -16,6 +16,8 @@ import java.util.Base64;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class Function
@@ -211,4 +213,21 @@ public class Function
     {
         return URLEncoder.encode( s, StandardCharsets.UTF_8 ).replaceAll( "\\+", "%20" ).replaceAll( "\\*", "%2A" );
     }
+
+    /**
+     * Background tasks (refresh, health checks, ...) must never prevent the JVM from stopping, so all threads
+     * created by this factory are daemon threads.
+     *
+     * @param name prefix of the thread names, followed by a counter
+     * @return the thread factory
+     */
+    public static ThreadFactory daemonThreadFactory( String name )
+    {
+        AtomicInteger counter = new AtomicInteger( 0 );
+        return r -> {
+            Thread t = new Thread( r, name + "-" + counter.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        };
+    }
 }
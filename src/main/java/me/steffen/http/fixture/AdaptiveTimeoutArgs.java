@@ -0,0 +1,22 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the adaptive read timeout. The read timeout of a connection is the latency
+ * percentile of the connection multiplied with the factor, bounded by minMs and maxMs. Until minSamples latencies
+ * are recorded the configured read timeout is used.
+ */
+@Accessors( fluent = true )
+public class AdaptiveTimeoutArgs
+{
+    // @formatter:off
+    @Setter @Getter private double percentile = 99.9;
+    @Setter @Getter private double factor     = 2.0;
+    @Setter @Getter private int    minMs      = 1000;
+    @Setter @Getter private int    maxMs      = 60000;
+    @Setter @Getter private int    minSamples = 100;
+    // @formatter:on
+}
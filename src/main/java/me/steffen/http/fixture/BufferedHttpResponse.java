@@ -0,0 +1,53 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.Header;
+import org.apache.http.ParseException;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * A response completely held in memory, i.e. created from a cache entry. Every instance has its own entity, so the
+ * same body can be handed to several {@link ResponseData} objects.
+ */
+public class BufferedHttpResponse
+        extends BasicHttpResponse
+        implements CloseableHttpResponse
+{
+    /**
+     * @param statusLine the status line
+     * @param headers    all headers of the response
+     * @param body       the body or null for a response without body
+     */
+    public BufferedHttpResponse( StatusLine statusLine, Header[] headers, byte[] body )
+    {
+        super( statusLine );
+        setHeaders( headers );
+        if ( null != body )
+        {
+            setEntity( new ByteArrayEntity( body, contentType( getFirstHeader( "Content-Type" ) ) ) );
+        }
+    }
+
+    private static ContentType contentType( Header h )
+    {
+        try
+        {
+            return null == h ? null : ContentType.parse( h.getValue() );
+        }
+        catch ( ParseException | UnsupportedCharsetException e )
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        // nothing to release
+    }
+}
@@ -0,0 +1,77 @@
+package me.steffen.http.fixture;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancels a running call of the {@link HttpClient}. The handle belongs to a {@link HttpRequest} and is shared with
+ * its copies (i.e. hedged requests), {@link #cancel()} aborts every running attempt, which releases the pooled
+ * connection immediately, and wakes up the attempts waiting for a rate, concurrency or priority limit. A cancelled
+ * call returns a {@link ResponseData} with {@link ResponseData#isCancelled()}.
+ * The handle can be used by another thread than the one executing the request.
+ */
+public class CancelHandle
+{
+    private final Set<HttpRequest> running = ConcurrentHashMap.newKeySet();
+
+    // wake up the attempts waiting in the queue of a limit
+    private final Set<Runnable> waiters = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * abort all running attempts of the request, the following executions of the request are rejected
+     */
+    public void cancel()
+    {
+        cancelled = true;
+        running.forEach( HttpRequest::abort );
+        waiters.forEach( Runnable::run );
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * allow the request to be executed again
+     */
+    public void reset()
+    {
+        cancelled = false;
+    }
+
+    void register( HttpRequest request )
+    {
+        running.add( request );
+        if ( cancelled )
+        {
+            request.abort();
+        }
+    }
+
+    void unregister( HttpRequest request )
+    {
+        running.remove( request );
+    }
+
+    void addWaiter( Runnable wakeUp )
+    {
+        waiters.add( wakeUp );
+        if ( cancelled )
+        {
+            wakeUp.run();
+        }
+    }
+
+    void removeWaiter( Runnable wakeUp )
+    {
+        waiters.remove( wakeUp );
+    }
+
+    static boolean isCancelled( CancelHandle cancelHandle )
+    {
+        return null != cancelHandle && cancelHandle.isCancelled();
+    }
+}
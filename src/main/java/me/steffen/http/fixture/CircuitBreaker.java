@@ -0,0 +1,221 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A circuit breaker for a single connection of the {@link HttpClient}.
+ * <ul>
+ * <li>CLOSED: all calls are executed, the outcome of the last calls is recorded in a sliding window. If the failure
+ * rate or the slow call rate exceeds its threshold the circuit opens.</li>
+ * <li>OPEN: all calls fail fast without a request until the open duration is over</li>
+ * <li>HALF_OPEN: a limited number of trial calls is executed, if all succeed the circuit closes, a single failure
+ * opens it again</li>
+ * </ul>
+ */
+public class CircuitBreaker
+{
+    private static final Logger LOGGER = LogManager.getLogger( CircuitBreaker.class );
+
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * notified after every state transition
+     */
+    @FunctionalInterface
+    public interface Listener
+    {
+        void onStateChange( String name, State from, State to );
+    }
+
+    @Getter private final String name;
+
+    private final CircuitBreakerArgs args;
+
+    private final List<Listener> listeners;
+
+    private final boolean[] failures;
+
+    private final boolean[] slowCalls;
+
+    private int index = 0;
+
+    private int recorded = 0;
+
+    private int failureCount = 0;
+
+    private int slowCount = 0;
+
+    private int trialCalls = 0;
+
+    private int trialSuccesses = 0;
+
+    private long openUntil = 0;
+
+    @Getter private volatile State state = State.CLOSED;
+
+    public CircuitBreaker( String name, CircuitBreakerArgs args )
+    {
+        this( name, args, new CopyOnWriteArrayList<>() );
+    }
+
+    CircuitBreaker( String name, CircuitBreakerArgs args, List<Listener> listeners )
+    {
+        this.name = name;
+        this.args = args;
+        this.listeners = listeners;
+        this.failures = new boolean[Math.max( 1, args.windowSize() )];
+        this.slowCalls = new boolean[failures.length];
+    }
+
+    public void addListener( Listener listener )
+    {
+        listeners.add( listener );
+    }
+
+    /**
+     * @return true if the call can be executed, false if it has to fail fast
+     */
+    public synchronized boolean tryAcquire()
+    {
+        if ( state == State.OPEN )
+        {
+            if ( System.currentTimeMillis() < openUntil )
+            {
+                return false;
+            }
+            transition( State.HALF_OPEN );
+        }
+        if ( state == State.HALF_OPEN )
+        {
+            if ( trialCalls >= args.halfOpenCalls() )
+            {
+                return false;
+            }
+            trialCalls++;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the remaining time of the open state in milliseconds
+     */
+    public synchronized long getRemainingOpenMillis()
+    {
+        return state == State.OPEN ? Math.max( 0, openUntil - System.currentTimeMillis() ) : 0;
+    }
+
+    /**
+     * release a call acquired by {@link #tryAcquire()} which wasn't executed (i.e. rejected by a local limit,
+     * cancelled or answered by the cache), the call isn't recorded
+     */
+    public synchronized void release()
+    {
+        if ( state == State.HALF_OPEN && trialCalls > trialSuccesses )
+        {
+            trialCalls--;
+        }
+    }
+
+    /**
+     * record the outcome of an executed call
+     *
+     * @param durationMs duration of the call
+     * @param failure    true if the call failed
+     */
+    public synchronized void onResult( long durationMs, boolean failure )
+    {
+        boolean slow = durationMs >= args.slowCallDurationMs();
+
+        if ( state == State.HALF_OPEN )
+        {
+            if ( failure || slow )
+            {
+                open();
+            }
+            else if ( ++trialSuccesses >= args.halfOpenCalls() )
+            {
+                transition( State.CLOSED );
+            }
+            return;
+        }
+        if ( state != State.CLOSED )
+        {
+            return;
+        }
+
+        if ( recorded == failures.length )
+        {
+            failureCount -= failures[index] ? 1 : 0;
+            slowCount -= slowCalls[index] ? 1 : 0;
+        }
+        else
+        {
+            recorded++;
+        }
+        failures[index] = failure;
+        slowCalls[index] = slow;
+        failureCount += failure ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        index = ( index + 1 ) % failures.length;
+
+        if ( recorded >= args.minimumCalls() && ( failureCount * 100 >= args.failureRateThreshold() * recorded
+                || slowCount * 100 >= args.slowCallRateThreshold() * recorded ) )
+        {
+            LOGGER.warn( "circuit breaker '{}': {} of {} calls failed, {} slow", name, failureCount, recorded,
+                    slowCount );
+            open();
+        }
+    }
+
+    private void open()
+    {
+        openUntil = System.currentTimeMillis() + args.openDurationMs();
+        transition( State.OPEN );
+    }
+
+    private void transition( State to )
+    {
+        State from = state;
+        state = to;
+        trialCalls = 0;
+        trialSuccesses = 0;
+        if ( to == State.CLOSED )
+        {
+            index = 0;
+            recorded = 0;
+            failureCount = 0;
+            slowCount = 0;
+        }
+
+        LOGGER.info( "circuit breaker '{}' changed from {} to {}", name, from, to );
+        for ( Listener l : listeners )
+        {
+            try
+            {
+                l.onStateChange( name, from, to );
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.error( "circuit breaker listener: {}", e );
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "CircuitBreaker{name=%s, state=%s, calls=%d, failures=%d, slow=%d}", name, state,
+                recorded, failureCount, slowCount );
+    }
+}
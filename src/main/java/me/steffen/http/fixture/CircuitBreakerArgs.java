@@ -0,0 +1,34 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the {@link CircuitBreaker} used per connection name.
+ * <ul>
+ * <li>windowSize: number of the last calls used to compute the failure and slow call rate</li>
+ * <li>minimumCalls: the rates are not evaluated before this number of calls was recorded</li>
+ * <li>failureRateThreshold: percentage of failed calls which opens the circuit</li>
+ * <li>slowCallDurationMs: a call whose network attempt takes longer is a slow call (the waits for local limits and
+ * the retry backoff don't count)</li>
+ * <li>slowCallRateThreshold: percentage of slow calls which opens the circuit</li>
+ * <li>serverErrorIsFailure: count a 5xx response as failure, otherwise only I/O errors are failures</li>
+ * <li>openDurationMs: time the circuit stays open before trial calls are allowed (half open)</li>
+ * <li>halfOpenCalls: number of successful trial calls which closes the circuit again</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class CircuitBreakerArgs
+{
+    // @formatter:off
+    @Setter @Getter private int     windowSize            = 20;
+    @Setter @Getter private int     minimumCalls          = 10;
+    @Setter @Getter private int     failureRateThreshold  = 50;
+    @Setter @Getter private long    slowCallDurationMs    = 5000L;
+    @Setter @Getter private int     slowCallRateThreshold = 80;
+    @Setter @Getter private boolean serverErrorIsFailure  = true;
+    @Setter @Getter private long    openDurationMs        = 30000L;
+    @Setter @Getter private int     halfOpenCalls         = 3;
+    // @formatter:on
+}
@@ -0,0 +1,31 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the {@link ConcurrencyLimiter} used per host.
+ * <ul>
+ * <li>initialLimit, minLimit, maxLimit: start value and bounds of the concurrency limit</li>
+ * <li>backoffRatio: the limit is multiplied with this value after an overload signal</li>
+ * <li>rttTolerance, rttSlackMs: a request taking longer than rttTolerance * minimal RTT + rttSlackMs is an overload
+ * signal, as well as an I/O error and the status codes 429 and 503</li>
+ * <li>maxQueueSize: requests waiting for a free slot, further requests are rejected</li>
+ * <li>maxQueueWaitMs: maximal wait time of a queued request</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class ConcurrencyLimitArgs
+{
+    // @formatter:off
+    @Setter @Getter private int    initialLimit   = 20;
+    @Setter @Getter private int    minLimit       = 1;
+    @Setter @Getter private int    maxLimit       = 200;
+    @Setter @Getter private double backoffRatio   = 0.9;
+    @Setter @Getter private double rttTolerance   = 2.0;
+    @Setter @Getter private long   rttSlackMs     = 5L;
+    @Setter @Getter private int    maxQueueSize   = 100;
+    @Setter @Getter private long   maxQueueWaitMs = 5000L;
+    // @formatter:on
+}
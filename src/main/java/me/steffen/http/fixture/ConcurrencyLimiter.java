@@ -0,0 +1,204 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An adaptive limit of the requests in flight to a single host using AIMD (additive increase, multiplicative
+ * decrease) on the measured round trip times:
+ * <ul>
+ * <li>every successful request in time increases the limit by 1/limit (about one per round trip) as long as the
+ * limit is used at least by half</li>
+ * <li>an overload signal (dropped request or a RTT well above the minimal RTT) decreases the limit by the backoff
+ * ratio, at most once per round trip</li>
+ * </ul>
+ * Requests above the limit wait in a bounded queue, if the queue is full or the wait time is over they are rejected.
+ */
+public class ConcurrencyLimiter
+{
+    private static final Logger LOGGER = LogManager.getLogger( ConcurrencyLimiter.class );
+
+    // the minimal RTT is measured again after this number of samples, so a faster backend is detected
+    private static final int MIN_RTT_SAMPLES = 1000;
+
+    @Getter private final String name;
+
+    private final ConcurrencyLimitArgs args;
+
+    private double limit;
+
+    private int inFlight = 0;
+
+    private int queued = 0;
+
+    private long minRtt = Long.MAX_VALUE;
+
+    private int rttSamples = 0;
+
+    private long lastDecrease = 0;
+
+    private long rejected = 0;
+
+    public ConcurrencyLimiter( String name, ConcurrencyLimitArgs args )
+    {
+        this.name = name;
+        this.args = args;
+        this.limit = Math.max( args.minLimit(), Math.min( args.maxLimit(), args.initialLimit() ) );
+    }
+
+    /**
+     * wait for a free slot at most the configured queue wait time
+     *
+     * @return true if the request can be sent, in this case {@link #release(long, boolean)} must be called
+     */
+    public boolean acquire()
+    {
+        return acquire( args.maxQueueWaitMs(), null );
+    }
+
+    /**
+     * wait for a free slot at most the given time (i.e. the configured queue wait time limited by the deadline of the
+     * request), a cancel of the handle stops the wait
+     *
+     * @param maxWaitMs    maximal wait time in milliseconds
+     * @param cancelHandle the handle of the waiting request, may be null
+     * @return true if the request can be sent, in this case {@link #release(long, boolean)} must be called
+     */
+    public synchronized boolean acquire( long maxWaitMs, CancelHandle cancelHandle )
+    {
+        if ( inFlight < (int) limit )
+        {
+            inFlight++;
+            return true;
+        }
+        if ( queued >= args.maxQueueSize() )
+        {
+            rejected++;
+            return false;
+        }
+
+        Runnable wakeUp = this::wakeUp;
+        queued++;
+        try
+        {
+            if ( null != cancelHandle )
+            {
+                cancelHandle.addWaiter( wakeUp );
+            }
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            while ( inFlight >= (int) limit )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 || CancelHandle.isCancelled( cancelHandle ) )
+                {
+                    rejected++;
+                    return false;
+                }
+                wait( remaining );
+            }
+
+            inFlight++;
+            return true;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            rejected++;
+            return false;
+        }
+        finally
+        {
+            queued--;
+            if ( null != cancelHandle )
+            {
+                cancelHandle.removeWaiter( wakeUp );
+            }
+        }
+    }
+
+    private synchronized void wakeUp()
+    {
+        notifyAll();
+    }
+
+    /**
+     * free the slot of a request which wasn't sent (rejected by a local limit), the limit isn't changed
+     */
+    public synchronized void release()
+    {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * @param rttMs   the duration of the request
+     * @param dropped true if the request failed or the server signaled an overload
+     */
+    public synchronized void release( long rttMs, boolean dropped )
+    {
+        int used = inFlight;
+        inFlight--;
+
+        if ( !dropped )
+        {
+            if ( ++rttSamples > MIN_RTT_SAMPLES )
+            {
+                rttSamples = 0;
+                minRtt = rttMs;
+            }
+            minRtt = Math.min( minRtt, rttMs );
+        }
+
+        long    now      = System.currentTimeMillis();
+        boolean overload = dropped || rttMs > args.rttTolerance() * minRtt + args.rttSlackMs();
+        if ( overload )
+        {
+            if ( now - lastDecrease > rttMs )
+            {
+                lastDecrease = now;
+                limit = Math.max( args.minLimit(), limit * args.backoffRatio() );
+                LOGGER.debug( "concurrency limit of '{}' decreased to {} (rtt {} ms, min rtt {} ms, dropped {})", name,
+                        (int) limit, rttMs, minRtt, dropped );
+            }
+        }
+        else if ( used * 2 >= limit )
+        {
+            limit = Math.min( args.maxLimit(), limit + 1.0 / limit );
+        }
+
+        notifyAll();
+    }
+
+    public long getMaxQueueWaitMillis()
+    {
+        return args.maxQueueWaitMs();
+    }
+
+    public synchronized int getLimit()
+    {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight()
+    {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth()
+    {
+        return queued;
+    }
+
+    public synchronized long getRejected()
+    {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format( "ConcurrencyLimiter{name=%s, limit=%d, inFlight=%d, queued=%d, rejected=%d, minRtt=%d}",
+                name, (int) limit, inFlight, queued, rejected, minRtt == Long.MAX_VALUE ? -1 : minRtt );
+    }
+}
@@ -0,0 +1,266 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DecompressingEntity;
+import org.apache.http.client.entity.DeflateInputStreamFactory;
+import org.apache.http.client.entity.GZIPInputStreamFactory;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replaces the content compression of the HttpClient to count the transferred bytes.
+ * <ul>
+ * <li>requests: the Accept-Encoding header is added and request bodies with a known size of at least the
+ * threshold are gzip compressed while they are sent (Content-Encoding: gzip)</li>
+ * <li>responses: gzip and deflate bodies are decompressed while they are read, without an intermediate buffer</li>
+ * <li>the byte counts of the request body and the response body (before and after the content coding) are stored in
+ * a {@link Counts} object as context attribute {@link #COUNTS}, the response counts are complete after the body is
+ * read</li>
+ * </ul>
+ * Like the built-in compression, nothing is done if the request config disables the content compression.
+ */
+public class ContentEncodingInterceptor
+        implements HttpRequestInterceptor, HttpResponseInterceptor
+{
+    private static final Logger LOGGER = LogManager.getLogger( ContentEncodingInterceptor.class );
+
+    public static final String COUNTS = "me.steffen.http.content-counts";
+
+    private final String acceptEncoding;
+
+    private final long requestMinBytes;
+
+    /**
+     * The byte counts of the last request and response of an execution, -1 if unknown.
+     */
+    public static class Counts
+    {
+        private final AtomicLong requestBytes         = new AtomicLong( -1 );
+        private final AtomicLong requestEncodedBytes  = new AtomicLong( -1 );
+        private final AtomicLong responseEncodedBytes = new AtomicLong( -1 );
+        private final AtomicLong responseBytes        = new AtomicLong( -1 );
+
+        public long getRequestBytes()
+        {
+            return requestBytes.get();
+        }
+
+        public long getRequestEncodedBytes()
+        {
+            return requestEncodedBytes.get();
+        }
+
+        public long getResponseEncodedBytes()
+        {
+            return responseEncodedBytes.get();
+        }
+
+        public long getResponseBytes()
+        {
+            return responseBytes.get();
+        }
+    }
+
+    // counts the bytes of the content, every writeTo restarts the count (the signer writes the entity too)
+    private static class CountingEntity
+            extends HttpEntityWrapper
+    {
+        private final AtomicLong count;
+
+        private CountingEntity( HttpEntity wrapped, AtomicLong count )
+        {
+            super( wrapped );
+            this.count = count;
+            count.set( 0 );
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            return new FilterInputStream( super.getContent() )
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int b = super.read();
+                    if ( b >= 0 )
+                    {
+                        count.incrementAndGet();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read( byte[] b, int off, int len ) throws IOException
+                {
+                    int n = super.read( b, off, len );
+                    if ( n > 0 )
+                    {
+                        count.addAndGet( n );
+                    }
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo( OutputStream out ) throws IOException
+        {
+            long[] written = { 0 };
+            super.writeTo( new FilterOutputStream( out )
+            {
+                @Override
+                public void write( int b ) throws IOException
+                {
+                    out.write( b );
+                    written[0]++;
+                }
+
+                @Override
+                public void write( byte[] b, int off, int len ) throws IOException
+                {
+                    out.write( b, off, len );
+                    written[0] += len;
+                }
+            } );
+            count.set( written[0] );
+        }
+    }
+
+    /**
+     * @param acceptEncoding  the value of the Accept-Encoding header, null or empty doesn't negotiate compressed
+     *                        responses
+     * @param requestMinBytes request bodies with at least this size are compressed, a negative value disables the
+     *                        request compression
+     */
+    public ContentEncodingInterceptor( String acceptEncoding, long requestMinBytes )
+    {
+        this.acceptEncoding = acceptEncoding;
+        this.requestMinBytes = requestMinBytes;
+    }
+
+    private static boolean isEnabled( HttpContext context )
+    {
+        RequestConfig rc = HttpClientContext.adapt( context ).getRequestConfig();
+        return null == rc || rc.isContentCompressionEnabled();
+    }
+
+    private static Counts counts( HttpContext context )
+    {
+        Object c = context.getAttribute( COUNTS );
+        if ( c instanceof Counts )
+        {
+            return (Counts) c;
+        }
+
+        Counts counts = new Counts();
+        context.setAttribute( COUNTS, counts );
+        return counts;
+    }
+
+    @Override
+    public void process( org.apache.http.HttpRequest request, HttpContext context )
+    {
+        if ( !isEnabled( context ) )
+        {
+            return;
+        }
+        if ( null != acceptEncoding && !acceptEncoding.isEmpty() && !request.containsHeader( "Accept-Encoding" ) )
+        {
+            request.addHeader( "Accept-Encoding", acceptEncoding );
+        }
+        if ( !( request instanceof HttpEntityEnclosingRequest ) )
+        {
+            return;
+        }
+
+        HttpEntityEnclosingRequest r      = (HttpEntityEnclosingRequest) request;
+        HttpEntity                 entity = r.getEntity();
+        // a retry runs the interceptors with the already wrapped entity again
+        if ( null == entity || entity instanceof CountingEntity )
+        {
+            return;
+        }
+
+        Counts counts = counts( context );
+        counts.requestBytes.set( entity.getContentLength() );
+        if ( requestMinBytes >= 0 && entity.getContentLength() >= requestMinBytes && null == entity
+                .getContentEncoding() && !request.containsHeader( "Content-Encoding" ) )
+        {
+            r.setEntity( new CountingEntity( new GzipCompressingEntity( entity ), counts.requestEncodedBytes ) );
+        }
+        else
+        {
+            r.setEntity( new CountingEntity( entity, counts.requestEncodedBytes ) );
+        }
+    }
+
+    @Override
+    public void process( HttpResponse response, HttpContext context )
+    {
+        if ( !isEnabled( context ) )
+        {
+            return;
+        }
+
+        Counts     counts = counts( context );
+        HttpEntity entity = response.getEntity();
+        if ( null == entity )
+        {
+            counts.responseEncodedBytes.set( 0 );
+            counts.responseBytes.set( 0 );
+            return;
+        }
+
+        // an empty body isn't a valid gzip stream
+        HttpEntity         raw      = new CountingEntity( entity, counts.responseEncodedBytes );
+        Header             ce       = entity.getContentLength() == 0 ? null : entity.getContentEncoding();
+        String             encoding = null == ce ? "identity" : ce.getValue().trim().toLowerCase( Locale.ROOT );
+        InputStreamFactory factory  = null;
+        switch ( encoding )
+        {
+            case "gzip":
+            case "x-gzip":
+                factory = GZIPInputStreamFactory.getInstance();
+                break;
+            case "deflate":
+                factory = DeflateInputStreamFactory.getInstance();
+                break;
+            case "identity":
+                break;
+            default:
+                LOGGER.debug( "unsupported Content-Encoding '{}', the body isn't decoded", encoding );
+                break;
+        }
+
+        if ( null == factory )
+        {
+            response.setEntity( new CountingEntity( raw, counts.responseBytes ) );
+            return;
+        }
+
+        response.setEntity( new CountingEntity( new DecompressingEntity( raw, factory ), counts.responseBytes ) );
+        response.removeHeaders( "Content-Length" );
+        response.removeHeaders( "Content-Encoding" );
+        response.removeHeaders( "Content-MD5" );
+    }
+}
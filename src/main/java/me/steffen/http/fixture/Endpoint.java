@@ -0,0 +1,100 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A single endpoint (protocol, host and port) of a connection with several endpoints. The load balancers use the
+ * number of requests in flight and the latencies of the endpoint. A failed request is recorded with a penalty latency
+ * (at least twice the current average), so an endpoint which fails fast doesn't attract more requests.
+ */
+public class Endpoint
+{
+    private static final long FAILURE_PENALTY_MS = 100L;
+
+    @Getter private final String url;
+
+    @Getter private final LatencyStats latencyStats = new LatencyStats();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    // set by the health checker, unhealthy endpoints are not selected as long as a healthy one exists
+    @Getter @Setter private volatile boolean healthy = true;
+
+    public Endpoint( String url )
+    {
+        this.url = url;
+    }
+
+    /**
+     * a request to this endpoint starts
+     */
+    public void begin()
+    {
+        inFlight.incrementAndGet();
+        requests.increment();
+    }
+
+    /**
+     * a request to this endpoint wasn't sent because a local limit rejected it, it isn't counted
+     */
+    public void release()
+    {
+        inFlight.decrementAndGet();
+        requests.decrement();
+    }
+
+    /**
+     * a request to this endpoint is finished
+     *
+     * @param durationMs duration of the request
+     * @param success    false if no response was received
+     */
+    public void end( long durationMs, boolean success )
+    {
+        inFlight.decrementAndGet();
+        if ( success )
+        {
+            latencyStats.record( durationMs );
+        }
+        else
+        {
+            failures.increment();
+            latencyStats.record( Math.max( durationMs, 2 * (long) latencyStats.getEwma() + FAILURE_PENALTY_MS ) );
+        }
+    }
+
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    public double getEwma()
+    {
+        return latencyStats.getEwma();
+    }
+
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s{healthy=%b, inFlight=%d, requests=%d, failures=%d, ewma=%.1f}", url, healthy,
+                getInFlight(), getRequests(), getFailures(), getEwma() );
+    }
+}
@@ -1,6 +1,11 @@
 package me.steffen.http.fixture;
 
 import lombok.Getter;
+import org.apache.http.Header;
+import org.apache.http.HttpMessage;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 @SuppressWarnings( "unused" )
 public enum EnumAuthType
@@ -25,6 +30,24 @@ public enum EnumAuthType
         override = b1;
     }
 
+    /**
+     * @param request the request
+     * @return the values of all auth header fields (Authorization, Cookie, X-Vault-Token) of the request, requests
+     * of different identities never have the same value
+     */
+    public static String identity( HttpMessage request )
+    {
+        return Arrays
+                .stream( values() )
+                .map( EnumAuthType::getAuthHeaderField )
+                .distinct()
+                .map( f -> f + "=" + Arrays
+                        .stream( request.getHeaders( f ) )
+                        .map( Header::getValue )
+                        .collect( Collectors.joining( "," ) ) )
+                .collect( Collectors.joining( "|" ) );
+    }
+
     @Override
     public String toString()
     {
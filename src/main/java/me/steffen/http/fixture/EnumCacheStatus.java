@@ -0,0 +1,18 @@
+package me.steffen.http.fixture;
+
+/**
+ * How the {@link HttpCache} answered a request, see {@link ResponseData#getCacheStatus()}.
+ * <ul>
+ * <li>NONE: the cache is disabled or the request isn't cacheable</li>
+ * <li>MISS: the response was received from the server</li>
+ * <li>HIT: the response was answered by a fresh cache entry without a request</li>
+ * <li>REVALIDATED: a stale cache entry was confirmed by the server (304 Not Modified)</li>
+ * </ul>
+ */
+public enum EnumCacheStatus
+{
+    NONE,
+    MISS,
+    HIT,
+    REVALIDATED
+}
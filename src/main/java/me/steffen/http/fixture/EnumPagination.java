@@ -0,0 +1,18 @@
+package me.steffen.http.fixture;
+
+/**
+ * How the {@link PageIterator} finds the next page, see {@link PaginationArgs}.
+ * <ul>
+ * <li>LINK_HEADER: the uri of the Link header entry with rel="next" (RFC 8288)</li>
+ * <li>CURSOR: a field of the JSON body, either the uri of the next page or a cursor value added as query parameter
+ * to the uri of the first page</li>
+ * <li>PAGE_NUMBER: an argument of the address template is the page number, it is incremented until a page is empty
+ * </li>
+ * </ul>
+ */
+public enum EnumPagination
+{
+    LINK_HEADER,
+    CURSOR,
+    PAGE_NUMBER
+}
@@ -0,0 +1,11 @@
+package me.steffen.http.fixture;
+
+/**
+ * The priority of a {@link HttpRequest} used by the {@link PriorityScheduler}, HIGH is served first.
+ */
+public enum EnumPriority
+{
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -0,0 +1,82 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+
+import javax.net.ssl.SSLContext;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Named sets of TLS protocols, cipher suites and ALPN protocols used by the socket factory of the
+ * {@link HttpClient}. The cipher suites are ordered by preference, entries not supported by the current JVM are
+ * removed. A null value means the JVM default.
+ * <ul>
+ * <li>JVM_DEFAULT: everything the JVM enables by default (the behavior without a profile)</li>
+ * <li>TLS13: TLS 1.3 only</li>
+ * <li>MODERN: TLS 1.3 and 1.2 with forward secrecy (ECDHE) and AEAD ciphers only, AES-GCM first</li>
+ * <li>CHACHA20_FIRST: like MODERN but ChaCha20-Poly1305 first, faster on hosts without AES hardware support</li>
+ * <li>COMPATIBLE: TLS 1.3 and 1.2 with the JVM default cipher suites</li>
+ * </ul>
+ */
+@SuppressWarnings( "unused" )
+public enum EnumTlsProfile
+{
+    JVM_DEFAULT( null, null, null ),
+    TLS13( new String[] { "TLSv1.3" }, new String[] {
+            "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256" },
+            new String[] { "http/1.1" } ),
+    MODERN( new String[] { "TLSv1.3", "TLSv1.2" }, new String[] {
+            "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384", "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+            "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256" },
+            new String[] { "http/1.1" } ),
+    CHACHA20_FIRST( new String[] { "TLSv1.3", "TLSv1.2" }, new String[] {
+            "TLS_CHACHA20_POLY1305_SHA256", "TLS_AES_128_GCM_SHA256", "TLS_AES_256_GCM_SHA384",
+            "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+            "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256" },
+            new String[] { "http/1.1" } ),
+    COMPATIBLE( new String[] { "TLSv1.3", "TLSv1.2" }, null, null );
+
+    private final String[] protocols;
+
+    private final String[] cipherSuites;
+
+    @Getter private final String[] applicationProtocols;
+
+    EnumTlsProfile( String[] protocols, String[] cipherSuites, String[] applicationProtocols )
+    {
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+        this.applicationProtocols = applicationProtocols;
+    }
+
+    private static String[] filter( String[] wanted, String[] supported )
+    {
+        if ( null == wanted )
+        {
+            return null;
+        }
+
+        List<String> sl = Arrays.asList( supported );
+        return Arrays.stream( wanted ).filter( sl::contains ).toArray( String[]::new );
+    }
+
+    /**
+     * @param sslContext the context used for the connections
+     * @return the protocols of this profile supported by the context or null for the JVM default
+     */
+    public String[] getProtocols( SSLContext sslContext )
+    {
+        return filter( protocols, sslContext.getSupportedSSLParameters().getProtocols() );
+    }
+
+    /**
+     * @param sslContext the context used for the connections
+     * @return the cipher suites of this profile supported by the context or null for the JVM default
+     */
+    public String[] getCipherSuites( SSLContext sslContext )
+    {
+        return filter( cipherSuites, sslContext.getSupportedSSLParameters().getCipherSuites() );
+    }
+}
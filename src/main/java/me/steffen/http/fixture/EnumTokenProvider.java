@@ -0,0 +1,15 @@
+package me.steffen.http.fixture;
+
+/**
+ * The supported sources of short living tokens for an {@link HttpAuth} entry.
+ * <ul>
+ * <li>OAUTH2_CLIENT_CREDENTIALS: OAuth2 client credentials grant, the auth name and password are the client id and
+ * secret, the token is sent as bearer token</li>
+ * <li>VAULT_RENEW_SELF: renews the Vault token (the auth name) by <code>/v1/auth/token/renew-self</code></li>
+ * </ul>
+ */
+public enum EnumTokenProvider
+{
+    OAUTH2_CLIENT_CREDENTIALS,
+    VAULT_RENEW_SELF
+}
@@ -0,0 +1,30 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the {@link HealthChecker}.
+ * <ul>
+ * <li>path: the probe path appended to the connection or endpoint url</li>
+ * <li>intervalMs: time between two probes of the same target</li>
+ * <li>timeoutMs: connect, socket and pool timeout of a probe</li>
+ * <li>unhealthyThreshold: consecutive failed probes which mark a target unhealthy</li>
+ * <li>healthyThreshold: consecutive successful probes which mark an unhealthy target healthy again</li>
+ * <li>skipUnhealthy: execute fails fast for an unhealthy connection and doesn't select unhealthy endpoints</li>
+ * </ul>
+ * A probe is successful if the response status is below 400.
+ */
+@Accessors( fluent = true )
+public class HealthCheckArgs
+{
+    // @formatter:off
+    @Setter @Getter private String  path               = "/health";
+    @Setter @Getter private long    intervalMs         = 10000L;
+    @Setter @Getter private int     timeoutMs          = 2000;
+    @Setter @Getter private int     unhealthyThreshold = 2;
+    @Setter @Getter private int     healthyThreshold   = 1;
+    @Setter @Getter private boolean skipUnhealthy      = true;
+    // @formatter:on
+}
@@ -0,0 +1,185 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import me.steffen.http.common.Function;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes all connections of an {@link HttpClient} (every endpoint of a connection with several endpoints) in the
+ * background. The probes use the connection pool of the client but bypass the retry policy, the circuit breakers and
+ * the latency statistics of the normal requests. The state of a target changes after a number of consecutive failed
+ * or successful probes.
+ */
+public class HealthChecker
+{
+    private static final Logger LOGGER = LogManager.getLogger( HealthChecker.class );
+
+    private final HttpClient client;
+
+    @Getter private final HealthCheckArgs args;
+
+    private final RequestConfig probeConfig;
+
+    private final Map<String, Status> states = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * the health state and probe history of a single url
+     */
+    public static class Status
+    {
+        @Getter private final String url;
+
+        @Getter private final LatencyStats probeLatencies = new LatencyStats( 64, 0.3 );
+
+        @Getter private volatile boolean healthy = true;
+
+        @Getter private volatile String lastError = "";
+
+        @Getter private volatile long lastProbe = 0;
+
+        private int consecutive = 0;
+
+        private Status( String url )
+        {
+            this.url = url;
+        }
+
+        // returns true if the state changed
+        private synchronized boolean update( boolean success, long latency, String error, HealthCheckArgs args )
+        {
+            lastProbe = System.currentTimeMillis();
+            lastError = error;
+            if ( success )
+            {
+                probeLatencies.record( latency );
+            }
+
+            consecutive = success == healthy ? 0 : consecutive + 1;
+            if ( consecutive >= ( healthy ? args.unhealthyThreshold() : args.healthyThreshold() ) )
+            {
+                healthy = !healthy;
+                consecutive = 0;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString()
+        {
+            return url + ( healthy ? " healthy " : " unhealthy (" + lastError + ") " ) + probeLatencies;
+        }
+    }
+
+    public HealthChecker( HttpClient client, HealthCheckArgs args )
+    {
+        this.client = client;
+        this.args = args;
+        this.probeConfig = RequestConfig
+                .custom()
+                .setConnectTimeout( args.timeoutMs() )
+                .setSocketTimeout( args.timeoutMs() )
+                .setConnectionRequestTimeout( args.timeoutMs() )
+                .setRedirectsEnabled( false )
+                .build();
+        this.scheduler = Executors.newScheduledThreadPool( 2, Function.daemonThreadFactory( "health-check" ) );
+    }
+
+    public void start()
+    {
+        scheduler.scheduleWithFixedDelay( this::probeAll, 0, args.intervalMs(), TimeUnit.MILLISECONDS );
+    }
+
+    public void stop()
+    {
+        scheduler.shutdownNow();
+    }
+
+    private void probeAll()
+    {
+        for ( String name : client.httpClientConfig().getConnections().keySet() )
+        {
+            List<Endpoint> el = client.getEndpoints( name );
+            if ( el.isEmpty() )
+            {
+                probe( name, client.getConnectionUrl( name ), null );
+            }
+            else
+            {
+                el.forEach( e -> probe( name, e.getUrl(), e ) );
+            }
+        }
+    }
+
+    private void probe( String name, String url, Endpoint endpoint )
+    {
+        HttpRequest request = new HttpRequest().setMethod( "GET" ).setPriority( EnumPriority.HIGH );
+        request.setConfig( probeConfig );
+
+        long         t  = System.currentTimeMillis();
+        ResponseData rd = client.executeProbe( url + args.path(), request );
+        if ( rd.isRejected() )
+        {
+            // no free connection, the probe says nothing about the endpoint
+            LOGGER.debug( "probe of {} not sent: {}", url, rd.getLastError() );
+            return;
+        }
+
+        long    latency = System.currentTimeMillis() - t;
+        boolean success = null != rd.getResponse() && rd.getStatus() < 400;
+        String error = success ?
+                "" :
+                null == rd.getResponse() ? rd.getLastError() : "status " + rd.getStatus();
+
+        Status s = states.computeIfAbsent( url, Status::new );
+        if ( s.update( success, latency, error, args ) )
+        {
+            LOGGER.warn( "connection '{}' endpoint {} is {}", name, url, s.isHealthy() ?
+                    "healthy again" :
+                    "unhealthy: " + error );
+        }
+        if ( null != endpoint )
+        {
+            endpoint.setHealthy( s.isHealthy() );
+        }
+    }
+
+    /**
+     * @param url connection or endpoint url
+     * @return the state or null if the url wasn't probed yet
+     */
+    public Status getStatus( String url )
+    {
+        return states.get( url );
+    }
+
+    /**
+     * @param url connection or endpoint url
+     * @return false if the last probes failed, true otherwise (also if not probed yet)
+     */
+    public boolean isHealthy( String url )
+    {
+        Status s = states.get( url );
+        return null == s || s.isHealthy();
+    }
+
+    /**
+     * @return the states of all probed urls
+     */
+    public Map<String, Status> getStates()
+    {
+        return states;
+    }
+}
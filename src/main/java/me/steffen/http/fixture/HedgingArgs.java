@@ -0,0 +1,36 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class contains the arguments for hedged requests. If a request of one of the methods isn't answered within
+ * the hedge delay a second identical request is sent and the first response is used, the other request is aborted.
+ * <ul>
+ * <li>methods: the hedged methods, only idempotent methods should be used</li>
+ * <li>delayMs: the fixed hedge delay</li>
+ * <li>percentile: if greater than 0 the delay is this latency percentile of the connection (i.e. 95), the fixed
+ * delay is used until minSamples responses were recorded</li>
+ * <li>minSamples: number of recorded latencies needed to use the percentile</li>
+ * <li>budgetRatio: every request allows this fraction of a hedge request for the connection (0.05 means at most 5%
+ * additional requests)</li>
+ * <li>budgetMinTokens, budgetMaxTokens: start and upper bound of the hedge tokens per connection</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class HedgingArgs
+{
+    // @formatter:off
+    @Setter @Getter private Set<String> methods         = new TreeSet<>( Set.of( "GET", "HEAD" ) );
+    @Setter @Getter private long        delayMs         = 50L;
+    @Setter @Getter private double      percentile      = 0;
+    @Setter @Getter private int         minSamples      = 20;
+    @Setter @Getter private double      budgetRatio     = 0.05;
+    @Setter @Getter private double      budgetMinTokens = 5.0;
+    @Setter @Getter private double      budgetMaxTokens = 20.0;
+    // @formatter:on
+}
@@ -30,6 +30,24 @@ public class HttpAuth
     @Setter
     private boolean encode = true;
 
+    /**
+     * optional source of short living tokens, if set the authorization header is renewed in the background
+     */
+    @JsonProperty( "tokenProvider" )
+    @Getter
+    @Setter
+    private TokenProviderArgs tokenProviderArgs;
+
+    @JsonIgnore @Getter @Setter private TokenProvider tokenProvider;
+
+    /**
+     * optional client side rate limit for all requests using this authorization
+     */
+    @JsonProperty( "rateLimit" )
+    @Getter
+    @Setter
+    private RateLimitArgs rateLimit;
+
     @JsonIgnore private String httpAuthorization = "";
 
     public HttpAuth()
@@ -77,6 +95,15 @@ public class HttpAuth
 
     public String getHttpAuthorization()
     {
+        if ( null != tokenProvider )
+        {
+            String token = tokenProvider.getHttpAuthorization();
+            if ( null != token )
+            {
+                return token;
+            }
+        }
+
         if ( httpAuthorization.isEmpty() )
         {
             computeHttpAuthorization();
@@ -0,0 +1,551 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.StatusLine;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * A private in-memory HTTP cache (RFC 9111) used by {@link HttpClient#executeAddress(String, HttpRequest)}.
+ * <ul>
+ * <li>only GET responses are stored, the key is the uri together with the auth headers (Authorization, Cookie and
+ * X-Vault-Token, see {@link EnumAuthType}), so different identities never share an entry. The request headers named
+ * by Vary must match too.</li>
+ * <li>a fresh entry (max-age, Expires or the heuristic freshness) answers the request without contacting the
+ * server, a stale entry with an ETag or Last-Modified is revalidated with If-None-Match / If-Modified-Since</li>
+ * <li>Cache-Control no-store, no-cache and max-age of the request and the response are honoured</li>
+ * <li>a successful unsafe request (POST, PUT, DELETE, ...) removes the entries of its uri</li>
+ * <li>the cache is bounded by the number of entries and the body bytes, the least recently used entry is evicted
+ * first</li>
+ * </ul>
+ * The responses are buffered by this class as response interceptor, if the context attribute {@link #STORE} is set.
+ * A body of unknown length is buffered only up to {@link HttpCacheArgs#maxEntryBytes()}, requests with
+ * {@link HttpRequest#setStreamResponse(boolean)} bypass the cache.
+ */
+public class HttpCache
+        implements HttpResponseInterceptor
+{
+    private static final Logger LOGGER = LogManager.getLogger( HttpCache.class );
+
+    // context attribute, if Boolean.TRUE the entity of a cacheable response is buffered to be stored afterwards
+    public static final String STORE = "me.steffen.http.cache-store";
+
+    // status codes cacheable by default (RFC 9110 15.1)
+    private static final Set<Integer> CACHEABLE_STATUS = Set.of( 200, 203, 204, 300, 301, 308, 404, 405, 410, 414,
+            501 );
+
+    private static final Set<String> SAFE_METHODS = Set.of( "GET", "HEAD", "OPTIONS", "TRACE" );
+
+    private final HttpCacheArgs args;
+
+    // access ordered, the first entry is the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>( 16, 0.75f, true );
+
+    private long bytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry
+    {
+        private final StatusLine          statusLine;
+        private final Header[]            headers;
+        private final byte[]              body;
+        private final Map<String, String> varyValues;
+        private final long                requestTime;
+        private final long                responseTime;
+
+        private Entry( StatusLine statusLine, Header[] headers, byte[] body, Map<String, String> varyValues,
+                long requestTime, long responseTime )
+        {
+            this.statusLine = statusLine;
+            this.headers = headers;
+            this.body = body;
+            this.varyValues = varyValues;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+        }
+
+        private Header first( String name )
+        {
+            return Arrays.stream( headers ).filter( h -> name.equalsIgnoreCase( h.getName() ) ).findFirst().orElse(
+                    null );
+        }
+
+        private String value( String name )
+        {
+            Header h = first( name );
+            return null == h ? null : h.getValue();
+        }
+
+        private int size()
+        {
+            return null == body ? 0 : body.length;
+        }
+    }
+
+    public HttpCache( HttpCacheArgs args )
+    {
+        this.args = args;
+    }
+
+    /**
+     * @param uriStr  the request uri
+     * @param request the request
+     * @return the cache key of the request
+     */
+    public static String key( String uriStr, HttpRequest request )
+    {
+        return uriStr + "|" + EnumAuthType.identity( request );
+    }
+
+    /**
+     * @param headers Cache-Control or Pragma headers
+     * @return the directives with lower case names, a directive without value has an empty value
+     */
+    static Map<String, String> directives( Header[] headers )
+    {
+        Map<String, String> m = new HashMap<>();
+        for ( Header h : headers )
+        {
+            for ( HeaderElement he : h.getElements() )
+            {
+                m.put( he.getName().toLowerCase( Locale.ROOT ), null == he.getValue() ? "" : he.getValue() );
+            }
+        }
+
+        return m;
+    }
+
+    private static long seconds( String value )
+    {
+        try
+        {
+            return null == value ? -1 : Math.max( 0, Long.parseLong( value.trim() ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    private static long date( String value, long defaultValue )
+    {
+        Date d = null == value ? null : DateUtils.parseDate( value );
+        return null == d ? defaultValue : d.getTime();
+    }
+
+    private long freshnessLifetime( Entry e )
+    {
+        Map<String, String> cc     = directives( Arrays
+                .stream( e.headers )
+                .filter( h -> "Cache-Control".equalsIgnoreCase( h.getName() ) )
+                .toArray( Header[]::new ) );
+        long                maxAge = seconds( cc.get( "max-age" ) );
+        if ( maxAge >= 0 )
+        {
+            return maxAge * 1000;
+        }
+
+        long date = date( e.value( "Date" ), e.responseTime );
+        if ( null != e.value( "Expires" ) )
+        {
+            // an invalid Expires value means already expired
+            return Math.max( 0, date( e.value( "Expires" ), 0 ) - date );
+        }
+
+        long lastModified = date( e.value( "Last-Modified" ), -1 );
+        if ( lastModified >= 0 && lastModified < date )
+        {
+            return ( date - lastModified ) * args.heuristicPercent() / 100;
+        }
+
+        return 0;
+    }
+
+    // RFC 9111 4.2.3
+    private static long currentAge( Entry e, long now )
+    {
+        long apparentAge  = Math.max( 0, e.responseTime - date( e.value( "Date" ), e.responseTime ) );
+        long ageValue     = Math.max( 0, seconds( e.value( "Age" ) ) ) * 1000;
+        long correctedAge = ageValue + ( e.responseTime - e.requestTime );
+
+        return Math.max( apparentAge, correctedAge ) + ( now - e.responseTime );
+    }
+
+    private boolean isFresh( Entry e, Map<String, String> requestDirectives, long now )
+    {
+        Map<String, String> cc = directives( Arrays
+                .stream( e.headers )
+                .filter( h -> "Cache-Control".equalsIgnoreCase( h.getName() ) )
+                .toArray( Header[]::new ) );
+        if ( cc.containsKey( "no-cache" ) || requestDirectives.containsKey( "no-cache" ) )
+        {
+            return false;
+        }
+
+        long age    = currentAge( e, now );
+        long maxAge = seconds( requestDirectives.get( "max-age" ) );
+        if ( maxAge >= 0 && age > maxAge * 1000 )
+        {
+            return false;
+        }
+
+        return age < freshnessLifetime( e );
+    }
+
+    private static Map<String, String> varyValues( Header[] responseHeaders, HttpRequest request )
+    {
+        Map<String, String> m = new HashMap<>();
+        for ( Header h : responseHeaders )
+        {
+            if ( "Vary".equalsIgnoreCase( h.getName() ) )
+            {
+                for ( HeaderElement he : h.getElements() )
+                {
+                    String name = he.getName().toLowerCase( Locale.ROOT );
+                    Header rh   = request.getFirstHeader( name );
+                    m.put( name, null == rh ? "" : rh.getValue() );
+                }
+            }
+        }
+
+        return m;
+    }
+
+    private synchronized Entry get( String key, HttpRequest request )
+    {
+        Entry e = entries.get( key );
+        if ( null == e )
+        {
+            return null;
+        }
+
+        for ( Map.Entry<String, String> v : e.varyValues.entrySet() )
+        {
+            Header rh = request.getFirstHeader( v.getKey() );
+            if ( !v.getValue().equals( null == rh ? "" : rh.getValue() ) )
+            {
+                return null;
+            }
+        }
+
+        return e;
+    }
+
+    private synchronized void put( String key, Entry e )
+    {
+        Entry old = entries.put( key, e );
+        bytes += e.size() - ( null == old ? 0 : old.size() );
+
+        Iterator<Entry> it = entries.values().iterator();
+        while ( ( entries.size() > args.maxEntries() || bytes > args.maxBytes() ) && it.hasNext() )
+        {
+            bytes -= it.next().size();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove( String key )
+    {
+        Entry old = entries.remove( key );
+        bytes -= null == old ? 0 : old.size();
+    }
+
+    /**
+     * remove all entries of the uri
+     *
+     * @param uriStr the uri
+     */
+    public synchronized void invalidate( String uriStr )
+    {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ( it.hasNext() )
+        {
+            Map.Entry<String, Entry> e = it.next();
+            if ( e.getKey().startsWith( uriStr + "|" ) )
+            {
+                bytes -= e.getValue().size();
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void store( String key, HttpRequest request, HttpResponse response, long requestTime,
+            long responseTime )
+    {
+        Map<String, String> cc = directives( response.getHeaders( "Cache-Control" ) );
+        if ( !CACHEABLE_STATUS.contains( response.getStatusLine().getStatusCode() ) || cc.containsKey( "no-store" )
+                || varyValues( response.getAllHeaders(), request ).containsKey( "*" ) )
+        {
+            remove( key );
+            return;
+        }
+        // without freshness information and validators the entry would never be used
+        if ( !cc.containsKey( "max-age" ) && !cc.containsKey( "no-cache" ) && null == response.getFirstHeader(
+                "Expires" ) && null == response.getFirstHeader( "ETag" ) && null == response.getFirstHeader(
+                "Last-Modified" ) )
+        {
+            remove( key );
+            return;
+        }
+
+        byte[]     body   = null;
+        HttpEntity entity = response.getEntity();
+        if ( null != entity )
+        {
+            if ( !entity.isRepeatable() || entity.getContentLength() < 0
+                    || entity.getContentLength() > args.maxEntryBytes() )
+            {
+                remove( key );
+                return;
+            }
+            try
+            {
+                body = EntityUtils.toByteArray( entity );
+            }
+            catch ( IOException e )
+            {
+                LOGGER.error( "can't store response of '{}': {}", key, e );
+                remove( key );
+                return;
+            }
+        }
+
+        put( key, new Entry( response.getStatusLine(), response.getAllHeaders(), body,
+                varyValues( response.getAllHeaders(), request ), requestTime, responseTime ) );
+    }
+
+    // RFC 9111 4.3.4, the headers of the 304 response replace the stored ones
+    private static Entry update( Entry e, HttpResponse notModified, long requestTime, long responseTime )
+    {
+        List<Header> headers = new ArrayList<>();
+        for ( Header h : e.headers )
+        {
+            if ( null == notModified.getFirstHeader( h.getName() ) )
+            {
+                headers.add( h );
+            }
+        }
+        headers.addAll( Arrays.asList( notModified.getAllHeaders() ) );
+        headers.removeIf( h -> "Content-Length".equalsIgnoreCase( h.getName() ) );
+
+        return new Entry( e.statusLine, headers.toArray( new Header[0] ), e.body, e.varyValues, requestTime,
+                responseTime );
+    }
+
+    private static ResponseData toResponseData( Entry e, long now, EnumCacheStatus cacheStatus )
+    {
+        BufferedHttpResponse response = new BufferedHttpResponse( e.statusLine, e.headers, e.body );
+        response.setHeader( new BasicHeader( "Age", Long.toString( currentAge( e, now ) / 1000 ) ) );
+
+        ResponseData rd = new ResponseData();
+        rd.setResponse( response );
+        rd.setCacheStatus( cacheStatus );
+        return rd;
+    }
+
+    /**
+     * Answer the request from the cache if possible, otherwise execute it and store the response.
+     *
+     * @param uriStr  the request uri
+     * @param request the request, not changed by the cache
+     * @param network executes a request with the given context
+     * @return the response
+     */
+    public ResponseData execute( String uriStr, HttpRequest request,
+            BiFunction<HttpRequest, HttpClientContext, ResponseData> network )
+    {
+        if ( !"GET".equals( request.getMethod() ) )
+        {
+            ResponseData rd = network.apply( request, HttpClientContext.create() );
+            if ( !SAFE_METHODS.contains( request.getMethod() ) && null != rd.getResponse() && rd.getStatus() < 400 )
+            {
+                invalidate( uriStr );
+            }
+            return rd;
+        }
+
+        Map<String, String> rcc = directives( request.getHeaders( "Cache-Control" ) );
+        if ( rcc.isEmpty() )
+        {
+            rcc = directives( request.getHeaders( "Pragma" ) );
+        }
+        // a streamed body is read by the caller, it can't be stored
+        if ( rcc.containsKey( "no-store" ) || request.isStreamResponse() )
+        {
+            return network.apply( request, HttpClientContext.create() );
+        }
+
+        String key = key( uriStr, request );
+        Entry  e   = get( key, request );
+        long   now = System.currentTimeMillis();
+        if ( null != e && isFresh( e, rcc, now ) )
+        {
+            hits.increment();
+            return toResponseData( e, now, EnumCacheStatus.HIT );
+        }
+
+        HttpRequest r = request;
+        if ( null != e && ( null != e.value( "ETag" ) || null != e.value( "Last-Modified" ) ) )
+        {
+            r = request.copy();
+            if ( null != e.value( "ETag" ) )
+            {
+                r.setHeader( "If-None-Match", e.value( "ETag" ) );
+            }
+            if ( null != e.value( "Last-Modified" ) )
+            {
+                r.setHeader( "If-Modified-Since", e.value( "Last-Modified" ) );
+            }
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute( STORE, Boolean.TRUE );
+        ResponseData rd           = network.apply( r, context );
+        long         responseTime = System.currentTimeMillis();
+        if ( null == rd.getResponse() )
+        {
+            return rd;
+        }
+
+        if ( r != request && rd.getStatus() == 304 )
+        {
+            revalidations.increment();
+            Entry updated = update( e, rd.getResponse(), now, responseTime );
+            put( key, updated );
+
+            ResponseData cached = toResponseData( updated, responseTime, EnumCacheStatus.REVALIDATED );
+            cached.setResponseTimeMillis( rd.getResponseTimeMillis() );
+            cached.setRetryCount( rd.getRetryCount() );
+            return cached;
+        }
+
+        misses.increment();
+        store( key, request, rd.getResponse(), now, responseTime );
+        rd.setCacheStatus( EnumCacheStatus.MISS );
+        return rd;
+    }
+
+    // buffer the entity of a response which may be stored, the response data reads it again
+    @Override
+    public void process( HttpResponse response, HttpContext context ) throws IOException
+    {
+        HttpEntity entity = response.getEntity();
+        if ( !Boolean.TRUE.equals( context.getAttribute( STORE ) ) || null == entity || entity.isRepeatable()
+                || !CACHEABLE_STATUS.contains( response.getStatusLine().getStatusCode() ) )
+        {
+            return;
+        }
+
+        long length = entity.getContentLength();
+        if ( length > args.maxEntryBytes() )
+        {
+            return;
+        }
+        if ( length >= 0 )
+        {
+            response.setEntity( new BufferedHttpEntity( entity ) );
+            return;
+        }
+
+        // unknown length (chunked or decompressed): at most maxEntryBytes are buffered, a larger body is passed on
+        // as a stream (not repeatable, so it isn't stored)
+        InputStream in     = entity.getContent();
+        byte[]      prefix = new byte[args.maxEntryBytes() + 1];
+        int         n      = in.readNBytes( prefix, 0, prefix.length );
+
+        AbstractHttpEntity replaced;
+        if ( n <= args.maxEntryBytes() )
+        {
+            in.close();
+            replaced = new ByteArrayEntity( Arrays.copyOf( prefix, n ) );
+        }
+        else
+        {
+            replaced = new InputStreamEntity( new SequenceInputStream( new ByteArrayInputStream( prefix ), in ) );
+        }
+        replaced.setContentType( entity.getContentType() );
+        replaced.setContentEncoding( entity.getContentEncoding() );
+        response.setEntity( replaced );
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public long getRevalidations()
+    {
+        return revalidations.sum();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "HttpCache{size=%d, bytes=%d, hits=%d, misses=%d, revalidations=%d, evictions=%d}",
+                getSize(), getBytes(), getHits(), getMisses(), getRevalidations(), getEvictions() );
+    }
+}
@@ -0,0 +1,25 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the {@link HttpCache}.
+ * <ul>
+ * <li>maxEntries, maxBytes: the bounds of the cache, the least recently used entries are evicted first</li>
+ * <li>maxEntryBytes: larger responses aren't stored</li>
+ * <li>heuristicPercent: responses with a Last-Modified but without explicit freshness are fresh for this percentage
+ * of their age at the time of the response (RFC 9111 4.2.2), 0 disables the heuristic freshness</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class HttpCacheArgs
+{
+    // @formatter:off
+    @Setter @Getter private int  maxEntries       = 1000;
+    @Setter @Getter private long maxBytes         = 64L * 1024 * 1024;
+    @Setter @Getter private int  maxEntryBytes    = 1024 * 1024;
+    @Setter @Getter private int  heuristicPercent = 10;
+    // @formatter:on
+}
@@ -1,8 +1,13 @@
 package me.steffen.http.fixture;
 
+import me.steffen.http.common.Function;
+import me.steffen.http.security.CachingTrustManager;
 import me.steffen.http.security.ClientPrivateKeyStrategy;
 import me.steffen.http.security.JksManager;
+import me.steffen.http.security.RevocationCache;
+import me.steffen.http.security.RevocationTrustManager;
 import me.steffen.http.security.SecurityHelper;
+import me.steffen.http.security.SignatureEngine;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -10,34 +15,61 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import org.apache.http.Header;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.ssl.PrivateKeyStrategy;
+import org.apache.http.ssl.SSLContexts;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.KeyStore;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
 @Accessors( fluent = true )
 public class HttpClient
+        implements Closeable
 {
     private static final Logger LOGGER = LogManager.getLogger( HttpClient.class );
 
+    // context attribute with the start of the last attempt in epoch milliseconds
+    private static final String ATTEMPT_START = "me.steffen.http.attempt-start";
+
     private CloseableHttpClient client = null;
 
     @Getter private HttpClientConfig httpClientConfig;
@@ -45,6 +77,93 @@ public class HttpClient
     // read only to obtain the current manager from the http client, can be set during the build method
     @Getter private JksManager jksManager = null;
 
+    // the trust cache is only available if enabled by the trustCacheTtlMs argument
+    @Getter private CachingTrustManager trustCache = null;
+
+    // the cached OCSP responses and CRLs, only available if the revocationCheck argument is set
+    @Getter private RevocationCache revocationCache = null;
+
+    // caches the keys and signature instances used to sign requests, only available if signatureKeyAlias is set
+    @Getter private SignatureEngine signatureEngine = null;
+
+    // the retry handling including the retry budget of every host, null if automatic retries are disabled
+    @Getter private RetryPolicy retryPolicy = null;
+
+    // the circuit breaker configuration, null if disabled
+    private CircuitBreakerArgs circuitBreakerArgs = null;
+
+    // one circuit breaker per connection name, created with the first request to the connection
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final List<CircuitBreaker.Listener> circuitBreakerListeners = new CopyOnWriteArrayList<>();
+
+    // the latencies of successful requests per connection name
+    private final Map<String, LatencyStats> latencyStats = new ConcurrentHashMap<>();
+
+    // hedged requests, only available if the hedging argument is set
+    private HedgingArgs hedgingArgs = null;
+
+    private RetryBudget hedgeBudget = null;
+
+    private ExecutorService hedgeExecutor = null;
+
+    private final LongAdder hedgesSent = new LongAdder();
+
+    private final LongAdder hedgesWon = new LongAdder();
+
+    // selects the endpoint of connections with several endpoints
+    @Getter private LoadBalancer loadBalancer = LoadBalancer.create( "p2c" );
+
+    // the endpoints of the connections with several endpoints, created with the first request to the connection
+    private final Map<String, List<Endpoint>> endpoints = new ConcurrentHashMap<>();
+
+    // probes the connections in the background, only available if the healthCheck argument is set
+    @Getter private HealthChecker healthChecker = null;
+
+    // rate limiters of connections ("connection:" + name) and authorizations ("auth:" + name)
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    // adaptive concurrency limits per host (authority of the request uri), null if disabled
+    private ConcurrencyLimitArgs concurrencyLimitArgs = null;
+
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    // serves the waiting requests by priority per host (authority of the request uri), null if disabled
+    private PrioritySchedulerArgs prioritySchedulerArgs = null;
+
+    // the slots of a priority scheduler, the connections of the pool per host
+    private int prioritySchedulerSlots = 0;
+
+    private final Map<String, PriorityScheduler> prioritySchedulers = new ConcurrentHashMap<>();
+
+    // the request configuration of the client, connections without own timeouts use it
+    private RequestConfig requestConfig = RequestConfig.DEFAULT;
+
+    private AdaptiveTimeoutArgs adaptiveTimeoutArgs = null;
+
+    // answers requests from memory, only available if the cache argument is set
+    @Getter private HttpCache httpCache = null;
+
+    // coalesces identical concurrent requests, only available if the singleFlight argument is set
+    @Getter private SingleFlight singleFlight = null;
+
+    // follows all redirects and remembers the permanent ones
+    @Getter private MemoizingRedirectStrategy redirectStrategy = null;
+
+    // requests the pages of the page iterators and the json rpc batches
+    private final ExecutorService backgroundExecutor = Executors.newCachedThreadPool(
+            Function.daemonThreadFactory( "background-request" ) );
+
+    // sends the json rpc batches after their window
+    private final ScheduledThreadPoolExecutor batchTimer = new ScheduledThreadPoolExecutor( 1,
+            Function.daemonThreadFactory( "rpc-batch-window" ) );
+
+    // aborts the requests with an expired deadline
+    private ScheduledThreadPoolExecutor deadlineWatchdog = null;
+
+    // renews the tokens of all auth entries with a token provider, created with the first provider
+    private ScheduledExecutorService tokenRefresher = null;
+
     // Create a http client which uses the LaxRedirect Strategy to redirect automatically all redirect responses
     public static HttpClient build( HttpClientArgs args, JksManager keyManager )
     {
@@ -93,30 +212,192 @@ public class HttpClient
                     null :
                     new ClientPrivateKeyStrategy().setAliasBase( args.clientCertAlias() );
 
+            KeyStore trustMaterial = args.keystoreContainsCertificates() ?
+                    keyManager.keystore() :
+                    keyManager.truststore();
+
+            UnaryOperator<X509ExtendedTrustManager> decorator = null;
+            if ( null != args.revocationCheck() )
+            {
+                if ( args.revocationCheck().preferStapled() )
+                {
+                    RevocationTrustManager.enableStatusRequest();
+                }
+                hc.revocationCache = new RevocationCache( args.revocationCheck() );
+                decorator = tm -> new RevocationTrustManager( tm, trustMaterial, hc.revocationCache,
+                        args.revocationCheck() );
+            }
+            if ( args.trustCacheTtlMs() > 0 )
+            {
+                UnaryOperator<X509ExtendedTrustManager> inner = null == decorator ?
+                        UnaryOperator.identity() :
+                        decorator;
+                decorator = tm -> {
+                    hc.trustCache = new CachingTrustManager( inner.apply( tm ), trustMaterial, args.trustCacheTtlMs(),
+                            args.trustCacheMaxEntries() ).setDelegateDecorator( inner );
+                    return hc.trustCache;
+                };
+            }
+
             SSLContext sslcontext = args.trustAll() ?
                     SecurityHelper.getTrustAllSslContext( hc.jksManager, pks ) :
-                    SecurityHelper.getSslContext( hc.jksManager, args.keystoreContainsCertificates(), pks );
+                    SecurityHelper.getSslContext( hc.jksManager, args.keystoreContainsCertificates(), pks,
+                            decorator );
+
+            clientBuilder.setSSLSocketFactory( new TlsProfileSocketFactory( sslcontext, args.tlsProfile(), hv ) );
 
-            clientBuilder.setSSLSocketFactory( new SSLConnectionSocketFactory( sslcontext, hv ) );
+            if ( null != args.signatureKeyAlias() )
+            {
+                hc.signatureEngine = new SignatureEngine( keyManager, args.signatureKeyPassword(),
+                        args.signatureDigest() );
+                clientBuilder.addInterceptorLast(
+                        new RequestSigningInterceptor( hc.signatureEngine, args.signatureKeyAlias() ) );
+            }
+        }
+        else if ( args.tlsProfile() != EnumTlsProfile.JVM_DEFAULT )
+        {
+            clientBuilder.setSSLSocketFactory(
+                    new TlsProfileSocketFactory( SSLContexts.createDefault(), args.tlsProfile(),
+                            new DefaultHostnameVerifier() ) );
         }
 
-        RequestConfig requestConfig = RequestConfig
+        hc.requestConfig = RequestConfig
                 .custom()
                 .setConnectTimeout( args.requestTimeoutMs() )
+                .setSocketTimeout( args.readTimeoutMs() )
+                .setConnectionRequestTimeout( args.leaseTimeoutMs() )
                 .setRedirectsEnabled( args.enableRedirect() )
                 .build();
+        hc.adaptiveTimeoutArgs = args.adaptiveTimeout();
+        hc.deadlineWatchdog = new ScheduledThreadPoolExecutor( 1, Function.daemonThreadFactory( "request-deadline" ) );
+        hc.deadlineWatchdog.setRemoveOnCancelPolicy( true );
 
+        if ( null != args.retryPolicy() )
+        {
+            hc.retryPolicy = new RetryPolicy( args.retryPolicy() );
+            clientBuilder
+                    .setRetryHandler( hc.retryPolicy )
+                    .setServiceUnavailableRetryStrategy( hc.retryPolicy )
+                    .addInterceptorFirst( (HttpRequestInterceptor) hc.retryPolicy )
+                    .addInterceptorLast( (HttpResponseInterceptor) hc.retryPolicy );
+        }
+        else
+        {
+            clientBuilder.setRetryHandler( new DefaultHttpRequestRetryHandler( 4, true ) );
+        }
+
+        // replaces the built-in compression, the response side runs before the cache buffers the body
+        ContentEncodingInterceptor contentEncoding = new ContentEncodingInterceptor( args.acceptEncoding(),
+                args.requestCompressionMinBytes() );
+        clientBuilder
+                .disableContentCompression()
+                .addInterceptorFirst( (HttpRequestInterceptor) contentEncoding )
+                .addInterceptorFirst( (HttpResponseInterceptor) contentEncoding );
+
+        if ( null != args.cache() )
+        {
+            hc.httpCache = new HttpCache( args.cache() );
+            clientBuilder.addInterceptorLast( hc.httpCache );
+        }
+
+        if ( args.singleFlight() )
+        {
+            hc.singleFlight = new SingleFlight();
+        }
+
+        // the response time covers the last attempt only, without the limit waits and the retry backoff
+        clientBuilder.addInterceptorLast( (HttpRequestInterceptor) ( r, context ) -> context.setAttribute(
+                ATTEMPT_START, System.currentTimeMillis() ) );
+
+        hc.redirectStrategy = new MemoizingRedirectStrategy( args.permanentRedirectCacheSize() );
+
+        int perRoute = null == args.concurrencyLimit() ?
+                args.maxConnPerRoute() :
+                Math.max( args.maxConnPerRoute(), args.concurrencyLimit().maxLimit() );
+
+        // the pool limits the connections per host, so every host gets its own scheduler of this size
+        if ( null != args.priorityScheduler() )
+        {
+            hc.prioritySchedulerArgs = args.priorityScheduler();
+            hc.prioritySchedulerSlots = args.priorityScheduler().maxConcurrent() > 0 ?
+                    args.priorityScheduler().maxConcurrent() :
+                    perRoute;
+        }
         hc.client = clientBuilder
-                .setDefaultRequestConfig( requestConfig )
-                .setRedirectStrategy( new LaxRedirectStrategy() )
-                .setRetryHandler( new DefaultHttpRequestRetryHandler( 4, true ) )
+                .setMaxConnPerRoute( perRoute )
+                .setMaxConnTotal( Math.max( args.maxConnTotal(), perRoute ) )
+                .setDefaultRequestConfig( hc.requestConfig )
+                .setRedirectStrategy( hc.redirectStrategy )
                 .build();
 
+        hc.loadBalancer = LoadBalancer.create( args.loadBalancer() );
+        hc.circuitBreakerArgs = args.circuitBreaker();
+        hc.concurrencyLimitArgs = args.concurrencyLimit();
+        if ( null != args.hedging() )
+        {
+            hc.hedgingArgs = args.hedging();
+            hc.hedgeBudget = new RetryBudget( args.hedging().budgetRatio(), args.hedging().budgetMinTokens(),
+                    args.hedging().budgetMaxTokens() );
+            hc.hedgeExecutor = Executors.newCachedThreadPool( Function.daemonThreadFactory( "hedged-request" ) );
+        }
         hc.httpClientConfig = HttpClientConfig.createHttpClientObject( args.configFile(), true );
+        for ( Map.Entry<String, HttpAuth> e : hc.httpClientConfig.getAuths().entrySet() )
+        {
+            if ( null != e.getValue().getTokenProviderArgs() )
+            {
+                hc.startTokenProvider( e.getKey(), e.getValue() );
+            }
+        }
+
+        if ( null != args.healthCheck() )
+        {
+            hc.healthChecker = new HealthChecker( hc, args.healthCheck() );
+            hc.healthChecker.start();
+        }
 
         return hc;
     }
 
+    private void startTokenProvider( String name, HttpAuth auth )
+    {
+        if ( null == tokenRefresher )
+        {
+            tokenRefresher = Executors.newSingleThreadScheduledExecutor( Function.daemonThreadFactory(
+                    "token-refresh" ) );
+        }
+        if ( null != auth.getTokenProvider() )
+        {
+            auth.getTokenProvider().stop();
+        }
+
+        LOGGER.debug( "start {} token provider for auth entry '{}'", auth.getTokenProviderArgs().getType(), name );
+        TokenProvider tp = TokenProvider.create( auth, auth.getTokenProviderArgs(), client, tokenRefresher );
+        auth.setTokenProvider( tp );
+        tp.start();
+    }
+
+    /**
+     * Attach a token provider to an existing auth entry. The first token is fetched immediately, afterwards the token
+     * is renewed in the background.
+     *
+     * @param name entry name of the auth
+     * @param args the token provider configuration
+     * @return the started provider or null if the auth entry doesn't exist
+     */
+    public TokenProvider putTokenProvider( String name, TokenProviderArgs args )
+    {
+        HttpAuth auth = httpClientConfig.getAuths().get( name );
+        if ( null == auth )
+        {
+            LOGGER.error( "can't add token provider, unknown auth identifier: {}", name );
+            return null;
+        }
+
+        auth.setTokenProviderArgs( args );
+        startTokenProvider( name, auth );
+        return auth.getTokenProvider();
+    }
+
     /**
      * @param name entry name
      * @param url  complete url
@@ -124,6 +405,8 @@ public class HttpClient
     public void putHost( String name, String url )
     {
         httpClientConfig.getConnections().put( name, new HttpConnection( url ) );
+        endpoints.remove( name );
+        rateLimiters.remove( "connection:" + name );
     }
 
     /**
@@ -135,6 +418,57 @@ public class HttpClient
     public void putHost( String name, String scheme, String host, int port )
     {
         httpClientConfig.getConnections().put( name, new HttpConnection( scheme, host, port ) );
+        endpoints.remove( name );
+        rateLimiters.remove( "connection:" + name );
+    }
+
+    /**
+     * Add an endpoint to a connection, the requests for the connection are distributed over all endpoints by the
+     * {@link LoadBalancer}.
+     *
+     * @param name entry name
+     * @param url  complete url of the additional endpoint
+     */
+    public void putEndpoint( String name, String url )
+    {
+        HttpConnection c = httpClientConfig.getConnections().get( name );
+        if ( null == c )
+        {
+            LOGGER.error( "can't add endpoint '{}', unknown connection: {}", url, name );
+            return;
+        }
+
+        c.getEndpoints().add( url );
+        endpoints.remove( name );
+    }
+
+    /**
+     * @param loadBalancer the strategy used to select the endpoints of a connection
+     * @return this
+     */
+    public HttpClient loadBalancer( LoadBalancer loadBalancer )
+    {
+        this.loadBalancer = loadBalancer;
+        return this;
+    }
+
+    /**
+     * @param name connection name
+     * @return the endpoints of the connection or an empty list if the connection has a single endpoint
+     */
+    public List<Endpoint> getEndpoints( String name )
+    {
+        HttpConnection c = httpClientConfig.getConnections().get( name );
+        if ( null == c || null == c.getEndpoints() || c.getEndpoints().isEmpty() )
+        {
+            return List.of();
+        }
+
+        return endpoints.computeIfAbsent( name, n -> {
+            List<Endpoint> l = new ArrayList<>();
+            c.getEndpointUrls().forEach( u -> l.add( new Endpoint( u ) ) );
+            return l;
+        } );
     }
 
     /**
@@ -147,7 +481,78 @@ public class HttpClient
     public void putAuth( String name, EnumAuthType authType, String authName, String authPassword,
             boolean doBase64Encoding )
     {
-        httpClientConfig.getAuths().put( name, new HttpAuth( authType, authName, authPassword, doBase64Encoding ) );
+        HttpAuth old = httpClientConfig.getAuths().put( name, new HttpAuth( authType, authName, authPassword,
+                doBase64Encoding ) );
+        if ( null != old && null != old.getTokenProvider() )
+        {
+            old.getTokenProvider().stop();
+        }
+        rateLimiters.remove( "auth:" + name );
+    }
+
+    /**
+     * @param name connection name
+     * @param args the rate limit of all requests to the connection, null removes the limit
+     */
+    public void putConnectionRateLimit( String name, RateLimitArgs args )
+    {
+        HttpConnection c = httpClientConfig.getConnections().get( name );
+        if ( null == c )
+        {
+            LOGGER.error( "can't set rate limit, unknown connection: {}", name );
+            return;
+        }
+
+        c.setRateLimit( args );
+        rateLimiters.remove( "connection:" + name );
+    }
+
+    /**
+     * @param name auth entry name
+     * @param args the rate limit of all requests using the authorization, null removes the limit
+     */
+    public void putAuthRateLimit( String name, RateLimitArgs args )
+    {
+        HttpAuth a = httpClientConfig.getAuths().get( name );
+        if ( null == a )
+        {
+            LOGGER.error( "can't set rate limit, unknown auth identifier: {}", name );
+            return;
+        }
+
+        a.setRateLimit( args );
+        rateLimiters.remove( "auth:" + name );
+    }
+
+    /**
+     * @param connection connection name
+     * @return the rate limiter of the connection or null if the connection has no rate limit
+     */
+    public RateLimiter getConnectionRateLimiter( String connection )
+    {
+        HttpConnection c = null == connection ? null : httpClientConfig.getConnections().get( connection );
+        if ( null == c || null == c.getRateLimit() )
+        {
+            return null;
+        }
+
+        return rateLimiters.computeIfAbsent( "connection:" + connection,
+                k -> new RateLimiter( k, c.getRateLimit() ) );
+    }
+
+    /**
+     * @param authorization auth entry name
+     * @return the rate limiter of the authorization or null if the authorization has no rate limit
+     */
+    public RateLimiter getAuthRateLimiter( String authorization )
+    {
+        HttpAuth a = null == authorization ? null : httpClientConfig.getAuths().get( authorization );
+        if ( null == a || null == a.getRateLimit() )
+        {
+            return null;
+        }
+
+        return rateLimiters.computeIfAbsent( "auth:" + authorization, k -> new RateLimiter( k, a.getRateLimit() ) );
     }
 
     /**
@@ -297,11 +702,563 @@ public class HttpClient
             return rd;
         }
 
-        setAuthorizationHeader( request, authorization );
-        return executeAddress( uriStr, request );
+        ResponseData stopped = stoppedResponse( request );
+        if ( null != stopped )
+        {
+            return stopped;
+        }
+
+        if ( null != healthChecker && healthChecker.getArgs().skipUnhealthy() && getEndpoints( host ).isEmpty()
+                && !healthChecker.isHealthy( getConnectionUrl( host ) ) )
+        {
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "connection '" + host + "' is unhealthy: " + healthChecker
+                    .getStatus( getConnectionUrl( host ) )
+                    .getLastError() );
+            rd.setResponse( null );
+            return rd;
+        }
+
+        for ( RateLimiter rl : new RateLimiter[] { getConnectionRateLimiter( host ),
+                getAuthRateLimiter( authorization ) } )
+        {
+            if ( null != rl && !rl.acquire( maxWaitMillis( rl.getMaxWaitMillis(), request ),
+                    request.getCancelHandle() ) )
+            {
+                return rejectedResponse( request, "rate limit of '" + rl.getName() + "' exceeded" );
+            }
+        }
+
+        CircuitBreaker cb = getCircuitBreaker( host );
+        if ( null != cb && !cb.tryAcquire() )
+        {
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "circuit breaker of connection '" + host + "' is " + cb.getState() + ", retry in "
+                    + cb.getRemainingOpenMillis() + " ms" );
+            rd.setRejected( true );
+            rd.setResponse( null );
+            return rd;
+        }
+
+        long          t            = System.currentTimeMillis();
+        ResponseData  rd           = null;
+        RequestConfig callerConfig = request.getConfig();
+        try
+        {
+            setAuthorizationHeader( request, authorization );
+            // a request config of the caller is used as it is, otherwise the timeouts of the connection
+            if ( null == callerConfig )
+            {
+                request.setConfig( getRequestConfig( host ) );
+            }
+
+            // the finished hedge aborts the other request, a streamed body would be cut off
+            rd = null != hedgingArgs && hedgingArgs.methods().contains( request.getMethod() )
+                    && !request.isStreamResponse() ?
+                    executeHedged( host, r -> executeEndpoint( host, addressAndArgs, uriStr, r ), request ) :
+                    executeEndpoint( host, addressAndArgs, uriStr, request );
+        }
+        finally
+        {
+            request.setConfig( callerConfig );
+            // a call which wasn't sent, was cancelled or was answered by the cache says nothing about the server
+            if ( null != cb && null != rd && ( rd.isRejected() || rd.isCancelled()
+                    || rd.getCacheStatus() == EnumCacheStatus.HIT ) )
+            {
+                cb.release();
+            }
+            else if ( null != cb )
+            {
+                // an exception is a failure, otherwise a half open breaker would keep the trial slot
+                cb.onResult( attemptMillis( rd, t ), null == rd || null == rd.getResponse() || (
+                        circuitBreakerArgs.serverErrorIsFailure() && rd.getStatus() >= 500 ) );
+            }
+        }
+        if ( null != rd.getResponse() && rd.getCacheStatus() != EnumCacheStatus.HIT )
+        {
+            getLatencyStats( host ).record( rd.getResponseTimeMillis() );
+        }
+
+        return rd;
+    }
+
+    public PageIterator paginate( String host, String authorization, String path, HttpRequest request,
+            PaginationArgs args )
+    {
+        List<String> l = new LinkedList<>();
+        l.add( path );
+        return paginate( host, authorization, l, request, args );
+    }
+
+    /**
+     * Request the pages of a paginated resource, the first page is requested like
+     * {@link #execute(String, String, List, HttpRequest)}. The pages are requested in the background ahead of the
+     * caller, see {@link PageIterator}.
+     *
+     * @param host           the connection name
+     * @param authorization  the auth entry name or null
+     * @param addressAndArgs the address (template) of the first page and its arguments
+     * @param request        the template of the page requests, it is copied for every page
+     * @param args           how the next page is found
+     * @return the lazy iterator of the pages
+     */
+    public PageIterator paginate( String host, String authorization, List<String> addressAndArgs,
+            HttpRequest request, PaginationArgs args )
+    {
+        return new PageIterator( this, host, authorization, addressAndArgs, request, args, backgroundExecutor );
+    }
+
+    /**
+     * @param host          the connection name
+     * @param authorization the auth entry name or null
+     * @param path          the path of the JSON-RPC endpoint
+     * @param args          window and size of the batches
+     * @return a batcher sending the calls to this endpoint as JSON-RPC 2.0 batch requests
+     */
+    public JsonRpcBatcher createJsonRpcBatcher( String host, String authorization, String path,
+            JsonRpcBatchArgs args )
+    {
+        return new JsonRpcBatcher( this, host, authorization, path, args, batchTimer, backgroundExecutor );
+    }
+
+    /**
+     * Execute the request with the uri string of the connection or, if the connection has several endpoints, with
+     * the endpoint selected by the load balancer.
+     */
+    private ResponseData executeEndpoint( String host, List<String> addressAndArgs, String uriStr,
+            HttpRequest request )
+    {
+        List<Endpoint> el = getEndpoints( host );
+        if ( el.isEmpty() )
+        {
+            return executeAddress( uriStr, request );
+        }
+
+        if ( null != healthChecker && healthChecker.getArgs().skipUnhealthy() )
+        {
+            List<Endpoint> healthy = new ArrayList<>( el.size() );
+            el.stream().filter( Endpoint::isHealthy ).forEach( healthy::add );
+            el = healthy.isEmpty() ? el : healthy;
+        }
+
+        Endpoint     ep = loadBalancer.select( el );
+        ResponseData rd = null;
+        long         t  = System.currentTimeMillis();
+        ep.begin();
+        try
+        {
+            rd = executeAddress( createUriString( ep.getUrl(), addressAndArgs ), request );
+        }
+        finally
+        {
+            // a rejected, cancelled (i.e. the losing hedge) or cached call says nothing about the endpoint
+            if ( null != rd && ( rd.isRejected() || rd.isCancelled() || rd.getCacheStatus() == EnumCacheStatus.HIT ) )
+            {
+                ep.release();
+            }
+            else
+            {
+                ep.end( attemptMillis( rd, t ), null != rd && null != rd.getResponse() );
+            }
+        }
+
+        return rd;
+    }
+
+    private long hedgeDelayMs( String host )
+    {
+        if ( hedgingArgs.percentile() > 0 )
+        {
+            LatencyStats ls = getLatencyStats( host );
+            if ( ls.getCount() >= hedgingArgs.minSamples() )
+            {
+                return ls.quantile( hedgingArgs.percentile() / 100.0 );
+            }
+        }
+
+        return hedgingArgs.delayMs();
+    }
+
+    /**
+     * Execute the request and if no response arrives within the hedge delay send a second request. The first
+     * successful response is used, the other request is aborted. Both requests are copies, so the aborted request
+     * isn't the one of the caller. For a connection with several endpoints the hedge selects its own endpoint.
+     */
+    private ResponseData executeHedged( String host, java.util.function.Function<HttpRequest, ResponseData> call,
+            HttpRequest request )
+    {
+        hedgeBudget.deposit( host );
+
+        CompletionService<ResponseData> cs      = new ExecutorCompletionService<>( hedgeExecutor );
+        HttpRequest                     primary = request.copy();
+        HttpRequest                     hedge   = null;
+        Future<ResponseData>            first   = cs.submit( () -> call.apply( primary ) );
+        try
+        {
+            Future<ResponseData> done = cs.poll( hedgeDelayMs( host ), TimeUnit.MILLISECONDS );
+            if ( null == done )
+            {
+                if ( !hedgeBudget.tryWithdraw( host ) )
+                {
+                    return first.get();
+                }
+
+                hedgesSent.increment();
+                hedge = request.copy();
+                HttpRequest h = hedge;
+                cs.submit( () -> call.apply( h ) );
+                done = cs.take();
+                if ( null == done.get().getResponse() )
+                {
+                    // the faster request failed, wait for the other one
+                    done = cs.take();
+                }
+                if ( done != first )
+                {
+                    hedgesWon.increment();
+                }
+            }
+
+            return done.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "hedged request interrupted" );
+            rd.setResponse( null );
+            return rd;
+        }
+        catch ( ExecutionException e )
+        {
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "hedged request failed: " + e.getCause() );
+            rd.setResponse( null );
+            return rd;
+        }
+        finally
+        {
+            // abort the request which is still running, it returns as cancelled and isn't counted as failure
+            primary.supersede();
+            if ( null != hedge )
+            {
+                hedge.supersede();
+            }
+        }
+    }
+
+    /**
+     * @param connection the connection name
+     * @return the latencies of the successful requests to this connection
+     */
+    public LatencyStats getLatencyStats( String connection )
+    {
+        return latencyStats.computeIfAbsent( connection, c -> new LatencyStats( 1024, 0.2 ) );
+    }
+
+    /**
+     * @param connection the connection name
+     * @return the read timeout derived from the latencies of the connection or -1 if not available
+     */
+    public int getAdaptiveReadTimeout( String connection )
+    {
+        if ( null == adaptiveTimeoutArgs )
+        {
+            return -1;
+        }
+
+        LatencyStats ls = getLatencyStats( connection );
+        if ( ls.getCount() < adaptiveTimeoutArgs.minSamples() )
+        {
+            return -1;
+        }
+
+        long t = (long) ( ls.quantile( adaptiveTimeoutArgs.percentile() / 100.0 ) * adaptiveTimeoutArgs.factor() );
+        return (int) Math.max( adaptiveTimeoutArgs.minMs(), Math.min( adaptiveTimeoutArgs.maxMs(), t ) );
+    }
+
+    /**
+     * @param connection the connection name
+     * @return the request configuration with the timeouts of the connection
+     */
+    public RequestConfig getRequestConfig( String connection )
+    {
+        HttpConnection c        = httpClientConfig.getConnections().get( connection );
+        int            adaptive = getAdaptiveReadTimeout( connection );
+        if ( ( null == c || ( c.getConnectTimeoutMs() < 0 && c.getReadTimeoutMs() < 0
+                && c.getLeaseTimeoutMs() < 0 ) ) && adaptive < 0 )
+        {
+            return requestConfig;
+        }
+
+        RequestConfig.Builder b = RequestConfig.copy( requestConfig );
+        if ( null != c && c.getConnectTimeoutMs() >= 0 )
+        {
+            b.setConnectTimeout( c.getConnectTimeoutMs() );
+        }
+        if ( null != c && c.getLeaseTimeoutMs() >= 0 )
+        {
+            b.setConnectionRequestTimeout( c.getLeaseTimeoutMs() );
+        }
+        if ( adaptive >= 0 )
+        {
+            b.setSocketTimeout( adaptive );
+        }
+        else if ( null != c && c.getReadTimeoutMs() >= 0 )
+        {
+            b.setSocketTimeout( c.getReadTimeoutMs() );
+        }
+
+        return b.build();
+    }
+
+    /**
+     * @return the number of hedge requests sent
+     */
+    public long getHedgesSent()
+    {
+        return hedgesSent.sum();
+    }
+
+    /**
+     * @return the number of hedge requests answered before the original request
+     */
+    public long getHedgesWon()
+    {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * @param connection the connection name
+     * @return the circuit breaker of the connection or null if the circuit breakers are disabled
+     */
+    public CircuitBreaker getCircuitBreaker( String connection )
+    {
+        if ( null == circuitBreakerArgs || null == connection )
+        {
+            return null;
+        }
+
+        return circuitBreakers.computeIfAbsent( connection,
+                c -> new CircuitBreaker( c, circuitBreakerArgs, circuitBreakerListeners ) );
+    }
+
+    /**
+     * @param listener notified about every state change of all circuit breakers of this client
+     */
+    public void addCircuitBreakerListener( CircuitBreaker.Listener listener )
+    {
+        circuitBreakerListeners.add( listener );
+    }
+
+    public ResponseData executeAddress( String address, HttpRequest request )
+    {
+        validate( request );
+        String uriStr = redirectStrategy.resolve( address, request.getMethod() );
+        if ( null != singleFlight && SingleFlight.isCoalescable( request ) )
+        {
+            return singleFlight.execute( SingleFlight.key( uriStr, request ), request,
+                    r -> executeCached( uriStr, r ) );
+        }
+
+        return executeCached( uriStr, request );
+    }
+
+    private ResponseData executeCached( String uriStr, HttpRequest request )
+    {
+        if ( null != httpCache )
+        {
+            return httpCache.execute( uriStr, request, ( r, context ) -> executeLimited( uriStr, r, context ) );
+        }
+
+        return executeLimited( uriStr, request, HttpClientContext.create() );
+    }
+
+    private ResponseData executeLimited( String uriStr, HttpRequest request, HttpClientContext context )
+    {
+        ConcurrencyLimiter cl = null;
+        if ( null != concurrencyLimitArgs )
+        {
+            try
+            {
+                cl = getConcurrencyLimiter( new URI( uriStr ).getRawAuthority() );
+            }
+            catch ( URISyntaxException e )
+            {
+                // reported by the execution
+            }
+        }
+        if ( null == cl )
+        {
+            return executeAddress( uriStr, request, context );
+        }
+
+        if ( !cl.acquire( maxWaitMillis( cl.getMaxQueueWaitMillis(), request ), request.getCancelHandle() ) )
+        {
+            return rejectedResponse( request, "concurrency limit of '" + cl.getName() + "' reached (limit "
+                    + cl.getLimit() + ", queue " + cl.getQueueDepth() + ")" );
+        }
+
+        ResponseData rd = null;
+        long         t  = System.currentTimeMillis();
+        try
+        {
+            rd = executeAddress( uriStr, request, context );
+        }
+        finally
+        {
+            // a cancelled call (i.e. the losing hedge) is no latency sample
+            if ( null != rd && ( rd.isRejected() || rd.isCancelled() ) )
+            {
+                cl.release();
+            }
+            else
+            {
+                cl.release( attemptMillis( rd, t ), null == rd || null == rd.getResponse() || rd.getStatus() == 429
+                        || rd.getStatus() == 503 );
+            }
+        }
+
+        return rd;
+    }
+
+    /**
+     * @param authority host and port
+     * @return the concurrency limiter of the host or null if the concurrency limit is disabled
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter( String authority )
+    {
+        if ( null == concurrencyLimitArgs || null == authority )
+        {
+            return null;
+        }
+
+        return concurrencyLimiters.computeIfAbsent( authority,
+                a -> new ConcurrencyLimiter( a, concurrencyLimitArgs ) );
+    }
+
+    /**
+     * execute a request without retries, i.e. for a health probe
+     */
+    ResponseData executeProbe( String uriStr, HttpRequest request )
+    {
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute( RetryPolicy.NO_RETRY, Boolean.TRUE );
+        return executeAddress( uriStr, request, context );
+    }
+
+    /**
+     * @param authority host and port
+     * @return the priority scheduler of the host or null if the priority scheduling is disabled
+     */
+    public PriorityScheduler getPriorityScheduler( String authority )
+    {
+        if ( null == prioritySchedulerArgs || null == authority )
+        {
+            return null;
+        }
+
+        return prioritySchedulers.computeIfAbsent( authority,
+                a -> new PriorityScheduler( prioritySchedulerArgs, prioritySchedulerSlots ) );
+    }
+
+    private ResponseData executeAddress( String uriStr, HttpRequest request, HttpClientContext context )
+    {
+        PriorityScheduler priorityScheduler = null;
+        if ( null != prioritySchedulerArgs )
+        {
+            try
+            {
+                priorityScheduler = getPriorityScheduler( new URI( uriStr ).getRawAuthority() );
+            }
+            catch ( URISyntaxException e )
+            {
+                // reported by the execution
+            }
+        }
+        if ( null == priorityScheduler )
+        {
+            return executeScheduled( uriStr, request, context );
+        }
+
+        if ( !priorityScheduler.acquire( request.getPriority(), maxWaitMillis(
+                priorityScheduler.getMaxQueueWaitMillis(), request ), request.getCancelHandle() ) )
+        {
+            return rejectedResponse( request, "no free connection for the " + request.getPriority()
+                    + " priority request" );
+        }
+        try
+        {
+            return executeScheduled( uriStr, request, context );
+        }
+        finally
+        {
+            priorityScheduler.release();
+        }
+    }
+
+    /**
+     * @return a response for a cancelled request or a request with an expired deadline, null if it can be executed
+     */
+    private static ResponseData stoppedResponse( HttpRequest request )
+    {
+        if ( null == request )
+        {
+            return null;
+        }
+
+        ResponseData rd = null;
+        if ( request.getCancelHandle().isCancelled() || request.isSuperseded() )
+        {
+            rd = new ResponseData();
+            rd.setCancelled( true );
+            rd.setLastError( "request cancelled" );
+        }
+        else if ( 0 != request.getDeadline() && 0 == request.getRemainingMillis() )
+        {
+            rd = new ResponseData();
+            rd.setDeadlineExceeded( true );
+            rd.setLastError( "deadline exceeded" );
+        }
+        if ( null != rd )
+        {
+            rd.setResponse( null );
+        }
+
+        return rd;
+    }
+
+    // the duration of the network attempt, the time since the start if the call failed with an exception
+    private static long attemptMillis( ResponseData rd, long start )
+    {
+        return null == rd ? System.currentTimeMillis() - start : rd.getResponseTimeMillis();
     }
 
-    public ResponseData executeAddress( String uriStr, HttpRequest request )
+    // the queue wait of a limit ends with the deadline of the request
+    private static long maxWaitMillis( long configuredMs, HttpRequest request )
+    {
+        return Math.min( configuredMs, request.getRemainingMillis() );
+    }
+
+    /**
+     * @return the response of a request which didn't get a permit of a local limit, cancelled or with the deadline
+     * exceeded if this ends the wait
+     */
+    private static ResponseData rejectedResponse( HttpRequest request, String error )
+    {
+        ResponseData rd = stoppedResponse( request );
+        if ( null == rd )
+        {
+            rd = new ResponseData();
+            rd.setLastError( error );
+            rd.setResponse( null );
+        }
+        rd.setRejected( true );
+
+        return rd;
+    }
+
+    private void validate( HttpRequest request )
     {
         if ( null == client )
         {
@@ -315,8 +1272,35 @@ public class HttpClient
         {
             throw new IllegalArgumentException( "method (GET,POST,...) is not set " );
         }
+    }
+
+    private ResponseData executeScheduled( String uriStr, HttpRequest request, HttpClientContext context )
+    {
+        validate( request );
+
+        // the time spent waiting for the rate, concurrency and priority limits counts
+        ResponseData stopped = stoppedResponse( request );
+        if ( null != stopped )
+        {
+            return stopped;
+        }
+
+        // the watchdog aborts the request wherever it is: waiting for a connection, sending, waiting between
+        // retries and redirects or reading the body, the retry policy doesn't start a retry behind the deadline
+        ScheduledFuture<?> watchdog = null;
+        AtomicBoolean      expired  = new AtomicBoolean( false );
+        if ( 0 != request.getDeadline() )
+        {
+            context.setAttribute( RetryPolicy.DEADLINE, request.getDeadline() );
+            watchdog = deadlineWatchdog.schedule( () -> {
+                expired.set( true );
+                request.abort();
+            }, request.getRemainingMillis(), TimeUnit.MILLISECONDS );
+        }
+        request.getCancelHandle().register( request );
 
         ResponseData rd = new ResponseData();
+        long         t  = System.currentTimeMillis();
         try
         {
             request.setURI( new URI( uriStr ) );
@@ -337,16 +1321,48 @@ public class HttpClient
                 LOGGER.debug( "-------------------------------------------------" );
             }
 
-            long t = System.currentTimeMillis();
-            rd.setResponse( this.client.execute( request ) );
-            rd.setResponseTimeMillis( System.currentTimeMillis() - t );
+            rd.setResponse( this.client.execute( request, context ), request.isStreamResponse() );
+            rd.setContentCounts( context.getAttribute( ContentEncodingInterceptor.COUNTS ) );
         }
         catch ( URISyntaxException | IOException e )
         {
-            LOGGER.error( "http execute exception {} thrown by {}", e.getClass().getName(), e.getMessage() );
+            if ( request.isAborted() )
+            {
+                LOGGER.debug( "http request aborted: {}", e.getMessage() );
+            }
+            else
+            {
+                LOGGER.error( "http execute exception {} thrown by {}", e.getClass().getName(), e.getMessage() );
+            }
             rd.setResponse( null );
             rd.setLastError( e.getMessage() );
         }
+        finally
+        {
+            request.getCancelHandle().unregister( request );
+            if ( null != watchdog )
+            {
+                watchdog.cancel( false );
+            }
+        }
+        Object start = context.getAttribute( ATTEMPT_START );
+        rd.setResponseTimeMillis( System.currentTimeMillis() - ( start instanceof Long ? (Long) start : t ) );
+
+        if ( expired.get() )
+        {
+            rd.setResponse( null );
+            rd.setDeadlineExceeded( true );
+            rd.setLastError( "deadline exceeded" );
+        }
+        else if ( request.getCancelHandle().isCancelled() || request.isSuperseded() && null == rd.getResponse() )
+        {
+            rd.setResponse( null );
+            rd.setCancelled( true );
+            rd.setLastError( "request cancelled" );
+        }
+
+        Object retries = context.getAttribute( RetryPolicy.RETRY_COUNT );
+        rd.setRetryCount( retries instanceof Integer ? (Integer) retries : 0 );
 
         return rd;
     }
@@ -376,8 +1392,12 @@ public class HttpClient
             return null;
         }
 
-        String hostUrl = hc.getConnectionUrl();
-        String myPath  = path == null ? "" : getPathString( path );
+        return createUriString( hc.getConnectionUrl(), path );
+    }
+
+    private String createUriString( String hostUrl, List<String> path )
+    {
+        String myPath = path == null ? "" : getPathString( path );
         if ( myPath.length() > 0 )
         {
             if ( !myPath.startsWith( "/" ) )
@@ -391,4 +1411,50 @@ public class HttpClient
 
     }
 
+    /**
+     * Stops the background work of the client (health checks, token renewals, revocation fetches, hedged, paged and
+     * batched requests, deadline watchdog) and closes the connection pool. The client can't be used afterwards.
+     */
+    @Override
+    public void close()
+    {
+        if ( null != healthChecker )
+        {
+            healthChecker.stop();
+        }
+        if ( null != httpClientConfig )
+        {
+            httpClientConfig
+                    .getAuths()
+                    .values()
+                    .stream()
+                    .map( HttpAuth::getTokenProvider )
+                    .filter( Objects::nonNull )
+                    .forEach( TokenProvider::stop );
+        }
+        for ( ExecutorService es : new ExecutorService[] { tokenRefresher, hedgeExecutor, backgroundExecutor,
+                batchTimer, deadlineWatchdog } )
+        {
+            if ( null != es )
+            {
+                es.shutdownNow();
+            }
+        }
+        if ( null != revocationCache )
+        {
+            revocationCache.close();
+        }
+
+        try
+        {
+            if ( null != client )
+            {
+                client.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "can't close the http client: {}", e.getMessage() );
+        }
+    }
 }
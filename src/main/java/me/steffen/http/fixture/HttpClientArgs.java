@@ -3,6 +3,7 @@ package me.steffen.http.fixture;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import me.steffen.http.security.RevocationCheckerArgs;
 
 @Accessors( fluent = true )
 public class HttpClientArgs
@@ -35,6 +36,16 @@ public class HttpClientArgs
      * The default is 10 seconds, which should be enough for each normal http operation.
      */
     @Setter @Getter private int     requestTimeoutMs             = 10000;
+    /**
+     * The socket read timeout, the maximal time without any data from the server. The default is 60 seconds, 0 waits
+     * forever. Every connection can define its own value (readTimeoutMs), see also {@link #adaptiveTimeout}.
+     */
+    @Setter @Getter private int     readTimeoutMs                = 60000;
+    /**
+     * The maximal time to wait for a connection from the pool, 0 waits forever. Every connection can define its own
+     * value (leaseTimeoutMs).
+     */
+    @Setter @Getter private int     leaseTimeoutMs               = 30000;
     /**
      * During a http request the server can send a redirect with an Location header. With this argument the behavior
      * for handling this can be defined. The default case is to do nothing. But set the argument to true the process
@@ -56,4 +67,116 @@ public class HttpClientArgs
      * this can be disabled by settings this to true. <b>This should be forbidden for every production services.</b>
      */
     @Setter @Getter private boolean trustAll                     = false;
+    /**
+     * Positively validated certificate chains can be remembered by a
+     * {@link me.steffen.http.security.CachingTrustManager}, so a new connection to the same server skips the PKIX path
+     * building. This is the maximal lifetime of such an entry, a value of 0 (the default) disables the cache.
+     */
+    @Setter @Getter private long    trustCacheTtlMs              = 0;
+    /**
+     * The maximal number of chains remembered by the trust cache (see {@link #trustCacheTtlMs}).
+     */
+    @Setter @Getter private int     trustCacheMaxEntries         = 256;
+    /**
+     * Set these arguments to check the revocation status of the server certificates using OCSP or CRLs, see
+     * {@link me.steffen.http.security.RevocationCheckerArgs}. The default null disables the revocation check.
+     */
+    @Setter @Getter private RevocationCheckerArgs revocationCheck = null;
+    /**
+     * The TLS protocols, cipher suites and ALPN protocols used for https connections, see {@link EnumTlsProfile}. The
+     * default uses the values of the JVM.
+     */
+    @Setter @Getter private EnumTlsProfile tlsProfile = EnumTlsProfile.JVM_DEFAULT;
+    /**
+     * If set every request is signed with the private key of this alias (HTTP message signatures with a
+     * Content-Digest of the body, see {@link RequestSigningInterceptor}). The default null sends unsigned requests.
+     */
+    @Setter @Getter private String signatureKeyAlias = null;
+    /**
+     * The password of the signature key, null uses the keystoreKeySecret of the
+     * {@link me.steffen.http.security.JksManager}.
+     */
+    @Setter @Getter private String signatureKeyPassword = null;
+    /**
+     * The digest of the request signatures (i.e. SHA-256 or SHA-512), the default null selects it by the key: SHA-256
+     * for RSA keys, the digest of the curve size for EC keys.
+     */
+    @Setter @Getter private String signatureDigest = null;
+    /**
+     * The retry handling for I/O errors and the status codes 429 and 503 with backoff, Retry-After and a retry budget
+     * per host, see {@link RetryPolicyArgs}. The default null keeps the simple handler which retries I/O errors up to
+     * 4 times without delay and never retries a status code.
+     */
+    @Setter @Getter private RetryPolicyArgs retryPolicy = null;
+    /**
+     * Set these arguments to use a circuit breaker per connection name, see {@link CircuitBreakerArgs}. An open circuit
+     * returns a response without a request immediately. The default null disables the circuit breakers.
+     */
+    @Setter @Getter private CircuitBreakerArgs circuitBreaker = null;
+    /**
+     * Set these arguments to hedge idempotent requests, a slow request is sent a second time and the first response
+     * is used, see {@link HedgingArgs}. The default null disables hedging.
+     */
+    @Setter @Getter private HedgingArgs hedging = null;
+    /**
+     * The strategy to distribute the requests of a connection with several endpoints, see
+     * {@link LoadBalancer#create(String)}: round-robin, random or p2c (power of two choices using the latency average
+     * and the requests in flight, the default).
+     */
+    @Setter @Getter private String loadBalancer = "p2c";
+    /**
+     * Set these arguments to probe all connections in the background until {@link HttpClient#close()}, see
+     * {@link HealthCheckArgs}. Unhealthy connections and endpoints are skipped. The default null disables the health
+     * checks.
+     */
+    @Setter @Getter private HealthCheckArgs healthCheck = null;
+    /**
+     * Set these arguments to limit the requests in flight per host adaptively, see {@link ConcurrencyLimitArgs}. The
+     * default null disables the limit.
+     */
+    @Setter @Getter private ConcurrencyLimitArgs concurrencyLimit = null;
+    /**
+     * The size of the connection pool for all hosts, see also {@link #maxConnPerRoute}.
+     */
+    @Setter @Getter private int maxConnTotal = 20;
+    /**
+     * The maximal number of connections to a single host. If a {@link #concurrencyLimit} is set, the pool allows at
+     * least its maxLimit connections per host.
+     */
+    @Setter @Getter private int maxConnPerRoute = 2;
+    /**
+     * Set these arguments to schedule the requests by their priority if all connections to a host are in use, every
+     * host gets its own {@link PriorityScheduler}. The default null serves the requests in arrival order.
+     */
+    @Setter @Getter private PrioritySchedulerArgs priorityScheduler = null;
+    /**
+     * Set these arguments to derive the read timeout of every connection from its observed latencies, see
+     * {@link AdaptiveTimeoutArgs}. The default null uses the configured read timeouts.
+     */
+    @Setter @Getter private AdaptiveTimeoutArgs adaptiveTimeout = null;
+    /**
+     * Set these arguments to answer GET requests from an in-memory cache following the Cache-Control, Expires, ETag
+     * and Last-Modified headers of the responses, see {@link HttpCache}. The default null disables the cache.
+     */
+    @Setter @Getter private HttpCacheArgs cache = null;
+    /**
+     * If true concurrent GET and HEAD requests with the same uri and auth headers (Authorization, Cookie and
+     * X-Vault-Token) share one request, see {@link SingleFlight}.
+     */
+    @Setter @Getter private boolean singleFlight = false;
+    /**
+     * The number of permanent redirects (301, 308) remembered by the client, requests to a remembered uri are sent
+     * to the final target directly, see {@link MemoizingRedirectStrategy}. 0 disables the memoization.
+     */
+    @Setter @Getter private int permanentRedirectCacheSize = 256;
+    /**
+     * The Accept-Encoding header added to the requests, gzip and deflate responses are decompressed while they are
+     * read. Null or empty doesn't negotiate compressed responses, see {@link ContentEncodingInterceptor}.
+     */
+    @Setter @Getter private String acceptEncoding = "gzip, deflate";
+    /**
+     * Request bodies with a known size of at least this number of bytes are sent gzip compressed with
+     * Content-Encoding gzip. The default -1 never compresses request bodies, the server has to support it.
+     */
+    @Setter @Getter private long requestCompressionMinBytes = -1;
 }
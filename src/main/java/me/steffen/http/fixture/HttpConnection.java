@@ -10,6 +10,8 @@ import org.apache.logging.log4j.Logger;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HttpConnection
 {
@@ -21,6 +23,19 @@ public class HttpConnection
     @Getter @Setter private String url;
 
     @Getter @Setter private int port = -1;
+
+    // additional endpoints (complete urls like https://host2:8443) serving the same content as the first one
+    @Getter @Setter private List<String> endpoints = new ArrayList<>();
+
+    // timeouts of this connection, a negative value uses the value of the client arguments
+    @Getter @Setter private int connectTimeoutMs = -1;
+
+    @Getter @Setter private int readTimeoutMs = -1;
+
+    @Getter @Setter private int leaseTimeoutMs = -1;
+
+    // optional client side rate limit for all requests to this connection
+    @Getter @Setter private RateLimitArgs rateLimit;
     // @formatter:on
 
     public HttpConnection()
@@ -63,6 +78,22 @@ public class HttpConnection
         return getConnectionUrl();
     }
 
+    /**
+     * @return the urls of all endpoints of this connection, the first one is the connection url
+     */
+    @JsonIgnore
+    public List<String> getEndpointUrls()
+    {
+        List<String> l = new ArrayList<>();
+        l.add( getConnectionUrl() );
+        if ( null != endpoints )
+        {
+            l.addAll( endpoints );
+        }
+
+        return l;
+    }
+
     @JsonIgnore
     public String getConnectionUrl()
     {
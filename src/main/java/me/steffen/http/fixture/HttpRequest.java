@@ -1,18 +1,35 @@
 package me.steffen.http.fixture;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
 import me.steffen.http.common.Function;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Primarily exists this class, to create overcome the stupid HttpGet, HttpPost and so on classes used by HttpClient.
@@ -22,8 +39,24 @@ public class HttpRequest
 {
     private static final Logger LOGGER = LogManager.getLogger( HttpRequest.class );
 
+    // larger request bodies aren't logged by showTextInformation
+    private static final long MAX_LOGGED_BODY = 64 * 1024;
+
     private String method;
 
+    private EnumPriority priority = EnumPriority.NORMAL;
+
+    // absolute time in epoch milliseconds, 0 means no deadline
+    private long deadline = 0;
+
+    private CancelHandle cancelHandle = new CancelHandle();
+
+    // this copy lost a hedge race and is aborted, see supersede
+    private volatile boolean superseded = false;
+
+    // the response body is read by the caller from the connection, see setStreamResponse
+    private boolean streamResponse = false;
+
     public HttpRequest addHeaderEntry( String name, String value )
     {
         super.addHeader( name, value );
@@ -55,6 +88,387 @@ public class HttpRequest
         return this;
     }
 
+    /**
+     * The file is streamed from disk while the request is sent, the body is repeatable.
+     *
+     * @param file        the file to send
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public HttpRequest setFileBody( File file, ContentType contentType )
+    {
+        setEntity( new FileEntity( file, null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType ) );
+        return this;
+    }
+
+    public HttpRequest setFileBody( Path file, ContentType contentType )
+    {
+        return setFileBody( file.toFile(), contentType );
+    }
+
+    /**
+     * The stream is read while the request is sent and closed afterwards. The body isn't repeatable, so the request
+     * isn't retried after the body was sent, see {@link #setStreamBody(Callable, long, ContentType)}.
+     *
+     * @param stream      the content
+     * @param length      the number of bytes, -1 if unknown (sent with chunked transfer encoding)
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public HttpRequest setStreamBody( InputStream stream, long length, ContentType contentType )
+    {
+        setEntity( new InputStreamEntity( stream, length, null == contentType ?
+                ContentType.APPLICATION_OCTET_STREAM :
+                contentType ) );
+        return this;
+    }
+
+    /**
+     * A repeatable stream body, every attempt (retries, hedges, signing) opens a new stream.
+     *
+     * @param opener      opens the content stream
+     * @param length      the number of bytes, -1 if unknown (sent with chunked transfer encoding)
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public HttpRequest setStreamBody( Callable<InputStream> opener, long length, ContentType contentType )
+    {
+        setEntity( new OpeningEntity( opener, length, contentType ) );
+        return this;
+    }
+
+    /**
+     * The array isn't copied, don't change it until the request is done.
+     *
+     * @param data        the content
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public HttpRequest setBytesBody( byte[] data, ContentType contentType )
+    {
+        setEntity( new ByteArrayEntity( data, null == contentType ?
+                ContentType.APPLICATION_OCTET_STREAM :
+                contentType ) );
+        return this;
+    }
+
+    /**
+     * Sends the remaining bytes of the buffer, the position of the buffer isn't changed and the body is repeatable.
+     * A heap buffer is sent from its backing array without a copy. A direct or read-only buffer has no accessible
+     * array, it is written through a channel which copies it piecewise into a small temporary array (never the whole
+     * content at once).
+     *
+     * @param data        the content
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public HttpRequest setBufferBody( ByteBuffer data, ContentType contentType )
+    {
+        if ( data.hasArray() )
+        {
+            setEntity( new ByteArrayEntity( data.array(), data.arrayOffset() + data.position(), data.remaining(),
+                    null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType ) );
+        }
+        else
+        {
+            setEntity( new ByteBufferEntity( data, contentType ) );
+        }
+
+        return this;
+    }
+
+    /**
+     * The value is serialized with a cached writer of its type every time the request is sent, so a changed value
+     * is sent with its current content. A value up to 64KB is serialized into a byte array and sent with
+     * Content-Length, a larger one is serialized straight to the connection (chunked transfer encoding, without an
+     * intermediate String or byte array). The body is repeatable, a retry serializes the value again.
+     *
+     * @param value the object to send as application/json, it must not be changed while the request is sent
+     * @return this
+     */
+    public HttpRequest setJsonBody( Object value )
+    {
+        setEntity( new JsonEntity( value ) );
+        return this;
+    }
+
+    /**
+     * @param body the multipart/form-data body, it is written part by part while the request is sent
+     * @return this
+     */
+    public HttpRequest setMultipartBody( MultipartBody body )
+    {
+        setEntity( body );
+        return this;
+    }
+
+    private static class JsonEntity
+            extends AbstractHttpEntity
+    {
+        // values serialized to at most this size are sent with Content-Length, larger ones are streamed chunked
+        private static final int MAX_BUFFERED = 64 * 1024;
+
+        private final Object value;
+
+        private final ObjectWriter writer;
+
+        // the serialized small value of the next send, dropped when it is written, so every send serializes again
+        private byte[] small = null;
+
+        private boolean probed = false;
+
+        // stops the probe as soon as the value exceeds the limit, the value isn't serialized to its end
+        private static class LimitExceededException
+                extends IOException
+        {
+        }
+
+        private static class BoundedStream
+                extends OutputStream
+        {
+            private final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 512 );
+
+            @Override
+            public void write( int b ) throws IOException
+            {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) throws IOException
+            {
+                if ( buffer.size() + len > MAX_BUFFERED )
+                {
+                    throw new LimitExceededException();
+                }
+                buffer.write( b, off, len );
+            }
+        }
+
+        private JsonEntity( Object value )
+        {
+            this.value = value;
+            this.writer = JsonCodec.writer( null == value ? Object.class : value.getClass() );
+            setContentType( ContentType.APPLICATION_JSON.toString() );
+        }
+
+        // serializes the value of the next send into the bounded buffer, gives up as soon as it is too large
+        private synchronized void probe()
+        {
+            if ( probed )
+            {
+                return;
+            }
+
+            probed = true;
+            small = null;
+            BoundedStream bs = new BoundedStream();
+            try
+            {
+                writer.writeValue( bs, value );
+                small = bs.buffer.toByteArray();
+            }
+            catch ( LimitExceededException e )
+            {
+                // streamed chunked
+            }
+            catch ( IOException e )
+            {
+                // sent chunked, the error is reported when the body is written
+                LOGGER.debug( "can't serialize the JSON body: {}", e.getMessage() );
+            }
+        }
+
+        // the probed small value or null, the next send probes again
+        private synchronized byte[] takeSmall()
+        {
+            byte[] b = probed ? small : null;
+            probed = false;
+            small = null;
+            return b;
+        }
+
+        @Override
+        public boolean isRepeatable()
+        {
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isChunked()
+        {
+            probe();
+            return null == small;
+        }
+
+        @Override
+        public synchronized long getContentLength()
+        {
+            probe();
+            return null == small ? -1 : small.length;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            byte[] b;
+            synchronized ( this )
+            {
+                b = probed ? small : null;
+            }
+            return new ByteArrayInputStream( null == b ? writer.writeValueAsBytes( value ) : b );
+        }
+
+        @Override
+        public void writeTo( OutputStream out ) throws IOException
+        {
+            byte[] b = takeSmall();
+            if ( null != b )
+            {
+                out.write( b );
+            }
+            else
+            {
+                writer.writeValue( out, value );
+            }
+            out.flush();
+        }
+
+        @Override
+        public boolean isStreaming()
+        {
+            return false;
+        }
+    }
+
+    private static class OpeningEntity
+            extends AbstractHttpEntity
+    {
+        private final Callable<InputStream> opener;
+
+        private final long length;
+
+        private OpeningEntity( Callable<InputStream> opener, long length, ContentType contentType )
+        {
+            this.opener = opener;
+            this.length = length;
+            setContentType( ( null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType ).toString() );
+            setChunked( length < 0 );
+        }
+
+        @Override
+        public boolean isRepeatable()
+        {
+            return true;
+        }
+
+        @Override
+        public long getContentLength()
+        {
+            return length;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            try
+            {
+                return opener.call();
+            }
+            catch ( IOException e )
+            {
+                throw e;
+            }
+            catch ( Exception e )
+            {
+                throw new IOException( "can't open the request body", e );
+            }
+        }
+
+        @Override
+        public void writeTo( OutputStream out ) throws IOException
+        {
+            try (InputStream in = getContent())
+            {
+                in.transferTo( out );
+            }
+        }
+
+        @Override
+        public boolean isStreaming()
+        {
+            return false;
+        }
+    }
+
+    private static class ByteBufferEntity
+            extends AbstractHttpEntity
+    {
+        private final ByteBuffer data;
+
+        private ByteBufferEntity( ByteBuffer data, ContentType contentType )
+        {
+            this.data = data.duplicate();
+            setContentType( ( null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType ).toString() );
+        }
+
+        @Override
+        public boolean isRepeatable()
+        {
+            return true;
+        }
+
+        @Override
+        public long getContentLength()
+        {
+            return data.remaining();
+        }
+
+        @Override
+        public InputStream getContent()
+        {
+            ByteBuffer b = data.duplicate();
+            return new InputStream()
+            {
+                @Override
+                public int read()
+                {
+                    return b.hasRemaining() ? b.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read( byte[] bytes, int off, int len )
+                {
+                    if ( !b.hasRemaining() )
+                    {
+                        return len == 0 ? 0 : -1;
+                    }
+
+                    int n = Math.min( len, b.remaining() );
+                    b.get( bytes, off, n );
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo( OutputStream out ) throws IOException
+        {
+            ByteBuffer          b  = data.duplicate();
+            WritableByteChannel ch = Channels.newChannel( out );
+            while ( b.hasRemaining() )
+            {
+                ch.write( b );
+            }
+        }
+
+        @Override
+        public boolean isStreaming()
+        {
+            return false;
+        }
+    }
+
     public void showHeaderInformation()
     {
         Function.logListElements( Level.DEBUG, "Header", new ArrayList<>( Arrays.asList( this.getAllHeaders() ) ) );
@@ -62,14 +476,23 @@ public class HttpRequest
 
     public void showTextInformation()
     {
-        if ( null == getEntity() || !LOGGER.isDebugEnabled() )
+        HttpEntity entity = getEntity();
+        if ( null == entity || !LOGGER.isDebugEnabled() )
+        {
+            return;
+        }
+        // reading a stream body would consume it, a large one would be buffered
+        if ( !entity.isRepeatable() || entity.getContentLength() < 0 || entity.getContentLength() > MAX_LOGGED_BODY )
         {
+            LOGGER.debug( "----------------- request data ------------------" );
+            LOGGER.debug( "[{}, {} bytes, {}]", entity.getContentType(), entity.getContentLength(),
+                    entity.isRepeatable() ? "repeatable" : "streamed" );
             return;
         }
 
         try
         {
-            String tmpStr = EntityUtils.toString( getEntity() );
+            String tmpStr = EntityUtils.toString( entity );
             if ( tmpStr != null && tmpStr.length() > 0 )
             {
                 LOGGER.debug( "----------------- request data ------------------" );
@@ -86,6 +509,22 @@ public class HttpRequest
         }
     }
 
+    /**
+     * @return a new request with the same method, uri, headers, entity, config, deadline and cancel handle (i.e. for a
+     * hedged request)
+     */
+    public HttpRequest copy()
+    {
+        HttpRequest r = new HttpRequest().setMethod( method ).setPriority( priority ).setDeadline( deadline );
+        r.cancelHandle = cancelHandle;
+        r.streamResponse = streamResponse;
+        r.setURI( getURI() );
+        r.setHeaders( getAllHeaders() );
+        r.setEntity( getEntity() );
+        r.setConfig( getConfig() );
+        return r;
+    }
+
     public HttpRequest clear()
     {
         reset();
@@ -105,4 +544,98 @@ public class HttpRequest
         this.method = method;
         return this;
     }
+
+    public EnumPriority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * @param priority used if the requests of the client are scheduled by priority, the default is NORMAL
+     * @return this
+     */
+    public HttpRequest setPriority( EnumPriority priority )
+    {
+        this.priority = priority;
+        return this;
+    }
+
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * The deadline covers the whole call: waiting for the rate, concurrency and priority limits, waiting for a
+     * connection, retries, redirects and reading the response body. If it expires the running attempt is aborted and
+     * the call returns a {@link ResponseData} with {@link ResponseData#isDeadlineExceeded()}.
+     *
+     * @param deadline absolute time in epoch milliseconds, 0 removes the deadline
+     * @return this
+     */
+    public HttpRequest setDeadline( long deadline )
+    {
+        this.deadline = deadline;
+        return this;
+    }
+
+    /**
+     * @param timeoutMs the time budget of the call starting now, see {@link #setDeadline(long)}
+     * @return this
+     */
+    public HttpRequest setTimeout( long timeoutMs )
+    {
+        return setDeadline( System.currentTimeMillis() + timeoutMs );
+    }
+
+    /**
+     * @return the milliseconds until the deadline (at least 0) or Long.MAX_VALUE without deadline
+     */
+    public long getRemainingMillis()
+    {
+        return 0 == deadline ? Long.MAX_VALUE : Math.max( 0, deadline - System.currentTimeMillis() );
+    }
+
+    public boolean isStreamResponse()
+    {
+        return streamResponse;
+    }
+
+    /**
+     * In streaming mode the response body isn't buffered by the client, it is read from the connection by
+     * {@link ResponseData#as(Class)}, {@link ResponseData#getBodyStream()} or (buffered) by the content getters. The
+     * connection is held until the body is read or the {@link ResponseData} is closed. The deadline doesn't cover the
+     * reading of the body and the request is neither hedged nor shared with concurrent requests.
+     *
+     * @param streamResponse true to read the response body from the connection
+     * @return this
+     */
+    public HttpRequest setStreamResponse( boolean streamResponse )
+    {
+        this.streamResponse = streamResponse;
+        return this;
+    }
+
+    /**
+     * @return the handle to cancel the running call from another thread
+     */
+    public CancelHandle getCancelHandle()
+    {
+        return cancelHandle;
+    }
+
+    /**
+     * abort this copy only, its call returns as cancelled (i.e. the losing request of a hedge), other copies sharing
+     * the cancel handle keep running
+     */
+    void supersede()
+    {
+        superseded = true;
+        abort();
+    }
+
+    boolean isSuperseded()
+    {
+        return superseded;
+    }
 }
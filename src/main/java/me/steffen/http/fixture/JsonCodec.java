@@ -0,0 +1,65 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shared Jackson mapper of the request and response bodies. The readers and writers are immutable and thread
+ * safe, they are created once per type and reused by all requests. The writers never close the stream they write to
+ * (it is the output stream of the connection).
+ */
+public final class JsonCodec
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private static final Map<Type, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    private JsonCodec()
+    {
+    }
+
+    /**
+     * @param type the runtime type of the values
+     * @return the cached writer of the type
+     */
+    public static ObjectWriter writer( Class<?> type )
+    {
+        return WRITERS.computeIfAbsent( type,
+                t -> MAPPER.writerFor( t ).without( JsonGenerator.Feature.AUTO_CLOSE_TARGET ) );
+    }
+
+    /**
+     * @param type the type of the values
+     * @return the cached reader of the type
+     */
+    public static ObjectReader reader( Class<?> type )
+    {
+        return READERS.computeIfAbsent( type, t -> MAPPER.readerFor( type ) );
+    }
+
+    /**
+     * @param type the generic type of the values, i.e. <code>new TypeReference&lt;List&lt;Item&gt;&gt;() {}</code>
+     * @return the cached reader of the type
+     */
+    public static ObjectReader reader( TypeReference<?> type )
+    {
+        return READERS.computeIfAbsent( type.getType(), t -> MAPPER.readerFor( type ) );
+    }
+
+    /**
+     * @return the shared mapper, don't change its configuration
+     */
+    public static ObjectMapper mapper()
+    {
+        return MAPPER;
+    }
+}
@@ -0,0 +1,21 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of a {@link JsonRpcBatcher}.
+ * <ul>
+ * <li>windowMs: a batch is sent at the latest this time after its first call</li>
+ * <li>maxBatchSize: a batch is sent immediately if it contains this number of calls</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class JsonRpcBatchArgs
+{
+    // @formatter:off
+    @Setter @Getter private long windowMs     = 5L;
+    @Setter @Getter private int  maxBatchSize = 50;
+    // @formatter:on
+}
@@ -0,0 +1,297 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects JSON-RPC 2.0 calls for one endpoint and sends them as batch request (an array of request objects) with a
+ * single POST through {@link HttpClient#execute}. A batch is sent if it reaches the maximal size or if the window
+ * since its first call elapsed, see {@link JsonRpcBatchArgs}. Every caller gets its own future, completed with the
+ * response object of its id. Created by {@link HttpClient#createJsonRpcBatcher}.
+ */
+public class JsonRpcBatcher
+        implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger( JsonRpcBatcher.class );
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client;
+
+    private final String host;
+
+    private final String authorization;
+
+    private final String path;
+
+    private final JsonRpcBatchArgs args;
+
+    private final ScheduledExecutorService timer;
+
+    private final ExecutorService sender;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private List<Call> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> window = null;
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder flushesBySize = new LongAdder();
+
+    private final LongAdder flushesByWindow = new LongAdder();
+
+    private final LongAdder failedBatches = new LongAdder();
+
+    private static class Call
+    {
+        private final long                             id;
+        private final String                           method;
+        private final JsonNode                         params;
+        private final CompletableFuture<JsonRpcResult> result = new CompletableFuture<>();
+
+        private Call( long id, String method, JsonNode params )
+        {
+            this.id = id;
+            this.method = method;
+            this.params = params;
+        }
+    }
+
+    JsonRpcBatcher( HttpClient client, String host, String authorization, String path, JsonRpcBatchArgs args,
+            ScheduledExecutorService timer, ExecutorService sender )
+    {
+        this.client = client;
+        this.host = host;
+        this.authorization = authorization;
+        this.path = path;
+        this.args = args;
+        this.timer = timer;
+        this.sender = sender;
+    }
+
+    /**
+     * @param method the remote method
+     * @param params the parameters (array or object), converted with Jackson, null omits the parameters
+     * @return the future of the result, it is always completed normally
+     */
+    public CompletableFuture<JsonRpcResult> call( String method, Object params )
+    {
+        JsonNode   p    = null == params ? null : MAPPER.valueToTree( params );
+        Call       c    = new Call( ids.incrementAndGet(), method, p );
+        List<Call> full = null;
+        synchronized ( this )
+        {
+            pending.add( c );
+            if ( pending.size() >= args.maxBatchSize() )
+            {
+                full = takePending();
+            }
+            else if ( null == window )
+            {
+                window = timer.schedule( this::flushWindow, args.windowMs(), TimeUnit.MILLISECONDS );
+            }
+        }
+
+        if ( null != full )
+        {
+            flushesBySize.increment();
+            List<Call> batch = full;
+            sender.execute( () -> send( batch ) );
+        }
+
+        return c.result;
+    }
+
+    private synchronized List<Call> takePending()
+    {
+        List<Call> l = pending;
+        pending = new ArrayList<>();
+        if ( null != window )
+        {
+            window.cancel( false );
+            window = null;
+        }
+
+        return l;
+    }
+
+    private void flushWindow()
+    {
+        List<Call> l = takePending();
+        if ( !l.isEmpty() )
+        {
+            flushesByWindow.increment();
+            sender.execute( () -> send( l ) );
+        }
+    }
+
+    /**
+     * send the collected calls now, the caller waits until the batch is answered
+     */
+    public void flush()
+    {
+        List<Call> l = takePending();
+        if ( !l.isEmpty() )
+        {
+            send( l );
+        }
+    }
+
+    private static void fail( List<Call> l, int code, String message )
+    {
+        l.forEach( c -> c.result.complete( JsonRpcResult.error( code, message ) ) );
+    }
+
+    private void send( List<Call> l )
+    {
+        batches.increment();
+        calls.add( l.size() );
+
+        ArrayNode batch = MAPPER.createArrayNode();
+        for ( Call c : l )
+        {
+            ObjectNode o = batch.addObject();
+            o.put( "jsonrpc", "2.0" );
+            o.put( "id", c.id );
+            o.put( "method", c.method );
+            if ( null != c.params )
+            {
+                o.set( "params", c.params );
+            }
+        }
+
+        try
+        {
+            HttpRequest r = new HttpRequest()
+                    .setMethod( "POST" )
+                    .addHeaderEntry( "Accept", "application/json" )
+                    .setJsonBody( batch );
+            ResponseData rd = client.execute( host, authorization, path, r );
+            if ( null == rd.getResponse() || rd.getStatus() / 100 != 2 )
+            {
+                failedBatches.increment();
+                fail( l, JsonRpcResult.TRANSPORT_ERROR, null == rd.getResponse() ?
+                        rd.getLastError() :
+                        "HTTP status " + rd.getStatus() );
+                return;
+            }
+
+            JsonNode root = MAPPER.readTree( rd.getBody() );
+            if ( null == root || !root.isArray() )
+            {
+                // the server rejected the whole batch with a single response object
+                failedBatches.increment();
+                JsonRpcResult e = null == root ?
+                        JsonRpcResult.error( JsonRpcResult.INTERNAL_ERROR, "empty batch response" ) :
+                        JsonRpcResult.of( root );
+                l.forEach( c -> c.result.complete( e.isError() ?
+                        e :
+                        JsonRpcResult.error( JsonRpcResult.INTERNAL_ERROR, "no batch response" ) ) );
+                return;
+            }
+
+            Map<Long, JsonNode> responses = new HashMap<>();
+            root.forEach( n -> responses.put( n.path( "id" ).asLong( -1 ), n ) );
+            for ( Call c : l )
+            {
+                JsonNode n = responses.get( c.id );
+                c.result.complete( null == n ?
+                        JsonRpcResult.error( JsonRpcResult.INTERNAL_ERROR, "no response for id " + c.id ) :
+                        JsonRpcResult.of( n ) );
+            }
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            LOGGER.error( "json rpc batch to '{}' failed: {}", host, e );
+            failedBatches.increment();
+            fail( l, JsonRpcResult.TRANSPORT_ERROR, e.getMessage() );
+        }
+    }
+
+    /**
+     * send the remaining calls
+     */
+    @Override
+    public void close()
+    {
+        flush();
+    }
+
+    /**
+     * @return the number of sent batch requests
+     */
+    public long getBatches()
+    {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of sent calls
+     */
+    public long getCalls()
+    {
+        return calls.sum();
+    }
+
+    /**
+     * @return the average number of calls per batch
+     */
+    public double getAverageFill()
+    {
+        long b = getBatches();
+        return 0 == b ? 0 : (double) getCalls() / b;
+    }
+
+    /**
+     * @return the average fill of the batches relative to the maximal batch size (0..1)
+     */
+    public double getFillRatio()
+    {
+        return getAverageFill() / Math.max( 1, args.maxBatchSize() );
+    }
+
+    public long getFlushesBySize()
+    {
+        return flushesBySize.sum();
+    }
+
+    public long getFlushesByWindow()
+    {
+        return flushesByWindow.sum();
+    }
+
+    public long getFailedBatches()
+    {
+        return failedBatches.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "JsonRpcBatcher{host=%s, path=%s, batches=%d, calls=%d, fill=%.1f (%.0f%%), "
+                        + "bySize=%d, byWindow=%d, failed=%d}", host, path, getBatches(), getCalls(), getAverageFill(),
+                getFillRatio() * 100, getFlushesBySize(), getFlushesByWindow(), getFailedBatches() );
+    }
+}
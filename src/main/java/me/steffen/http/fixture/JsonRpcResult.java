@@ -0,0 +1,67 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+
+/**
+ * The result of a JSON-RPC 2.0 call, either the result or the error of the response object. Errors of the batch
+ * request itself (i.e. a connection error or a status other than 2xx) are reported with {@link #TRANSPORT_ERROR}.
+ */
+public class JsonRpcResult
+{
+    // implementation defined server error code of the JSON-RPC specification, used for errors of the HTTP request
+    public static final int TRANSPORT_ERROR = -32000;
+
+    public static final int INTERNAL_ERROR = -32603;
+
+    @Getter private final JsonNode result;
+
+    @Getter private final int errorCode;
+
+    @Getter private final String errorMessage;
+
+    @Getter private final JsonNode errorData;
+
+    private JsonRpcResult( JsonNode result, int errorCode, String errorMessage, JsonNode errorData )
+    {
+        this.result = result;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.errorData = errorData;
+    }
+
+    /**
+     * @param response a JSON-RPC response object
+     * @return the result or the error of the response
+     */
+    public static JsonRpcResult of( JsonNode response )
+    {
+        JsonNode error = response.get( "error" );
+        if ( null != error && !error.isNull() )
+        {
+            int    code    = error.path( "code" ).asInt( INTERNAL_ERROR );
+            String message = error.path( "message" ).asText( "" );
+            return new JsonRpcResult( null, code, message, error.get( "data" ) );
+        }
+
+        return new JsonRpcResult( response.get( "result" ), 0, null, null );
+    }
+
+    public static JsonRpcResult error( int errorCode, String errorMessage )
+    {
+        return new JsonRpcResult( null, errorCode, errorMessage, null );
+    }
+
+    public boolean isError()
+    {
+        return null != errorMessage;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isError() ?
+                String.format( "JsonRpcResult{error=%d, message='%s', data=%s}", errorCode, errorMessage, errorData ) :
+                String.format( "JsonRpcResult{result=%s}", result );
+    }
+}
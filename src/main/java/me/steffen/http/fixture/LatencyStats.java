@@ -0,0 +1,112 @@
+package me.steffen.http.fixture;
+
+import java.util.Arrays;
+
+/**
+ * Latency statistics of a connection: the last {@link #size} samples in a ring buffer for quantiles and an
+ * exponentially weighted moving average. The quantiles are computed from a sorted copy of the ring buffer, the copy
+ * is reused until new samples are recorded.
+ */
+public class LatencyStats
+{
+    private static final int DEFAULT_SIZE = 128;
+
+    private static final double DEFAULT_ALPHA = 0.2;
+
+    private final long[] samples;
+
+    private final double alpha;
+
+    private final int size;
+
+    private int index = 0;
+
+    private long count = 0;
+
+    private double ewma = 0;
+
+    private long[] sorted = null;
+
+    public LatencyStats()
+    {
+        this( DEFAULT_SIZE, DEFAULT_ALPHA );
+    }
+
+    /**
+     * @param size  number of samples used for the quantiles
+     * @param alpha weight of a new sample for the moving average
+     */
+    public LatencyStats( int size, double alpha )
+    {
+        this.size = Math.max( 1, size );
+        this.samples = new long[this.size];
+        this.alpha = alpha;
+    }
+
+    public synchronized void record( long millis )
+    {
+        samples[index] = millis;
+        index = ( index + 1 ) % size;
+        ewma = count == 0 ? millis : alpha * millis + ( 1 - alpha ) * ewma;
+        count++;
+        sorted = null;
+    }
+
+    /**
+     * @param q the quantile, i.e. 0.95
+     * @return the quantile of the recorded samples or -1 if nothing recorded
+     */
+    public synchronized long quantile( double q )
+    {
+        int n = (int) Math.min( count, size );
+        if ( n == 0 )
+        {
+            return -1;
+        }
+        if ( null == sorted )
+        {
+            sorted = Arrays.copyOf( samples, n );
+            Arrays.sort( sorted );
+        }
+
+        return sorted[Math.max( 0, Math.min( n - 1, (int) Math.ceil( q * n ) - 1 ) )];
+    }
+
+    /**
+     * @return the moving average or 0 if nothing recorded
+     */
+    public synchronized double getEwma()
+    {
+        return ewma;
+    }
+
+    /**
+     * @return the number of all recorded samples
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the recorded samples, the oldest first
+     */
+    public synchronized long[] getHistory()
+    {
+        int    n = (int) Math.min( count, size );
+        long[] h = new long[n];
+        for ( int i = 0; i < n; ++i )
+        {
+            h[i] = samples[( index - n + i + size ) % size];
+        }
+
+        return h;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format( "LatencyStats{count=%d, ewma=%.1f, p50=%d, p95=%d, p99=%d}", count, ewma,
+                quantile( 0.5 ), quantile( 0.95 ), quantile( 0.99 ) );
+    }
+}
@@ -0,0 +1,84 @@
+package me.steffen.http.fixture;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the endpoint of a connection with several endpoints for the next request. The implementations are
+ * created by {@link #create(String)} from the loadBalancer argument of the {@link HttpClient}, own strategies can
+ * be set by {@link HttpClient#loadBalancer(LoadBalancer)}.
+ */
+@FunctionalInterface
+public interface LoadBalancer
+{
+    /**
+     * @param endpoints the candidates, never empty
+     * @return the selected endpoint
+     */
+    Endpoint select( List<Endpoint> endpoints );
+
+    /**
+     * @param name the strategy name:
+     *             <ul>
+     *             <li>round-robin: every endpoint in turn</li>
+     *             <li>random: a random endpoint</li>
+     *             <li>p2c (default): power of two choices, from two random endpoints the one with the lower cost
+     *             (latency average multiplied by the requests in flight) is used</li>
+     *             </ul>
+     * @return the load balancer
+     */
+    static LoadBalancer create( String name )
+    {
+        switch ( null == name ? "" : name )
+        {
+            case "round-robin":
+                return new RoundRobin();
+            case "random":
+                return endpoints -> endpoints.get( ThreadLocalRandom.current().nextInt( endpoints.size() ) );
+            default:
+                return new PowerOfTwoChoices();
+        }
+    }
+
+    class RoundRobin
+            implements LoadBalancer
+    {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public Endpoint select( List<Endpoint> endpoints )
+        {
+            return endpoints.get( Math.floorMod( next.getAndIncrement(), endpoints.size() ) );
+        }
+    }
+
+    class PowerOfTwoChoices
+            implements LoadBalancer
+    {
+        // an endpoint without any latency sample has the lowest cost, so every endpoint is tried
+        private static double cost( Endpoint e )
+        {
+            return e.getEwma() * ( e.getInFlight() + 1 );
+        }
+
+        @Override
+        public Endpoint select( List<Endpoint> endpoints )
+        {
+            int n = endpoints.size();
+            if ( n == 1 )
+            {
+                return endpoints.get( 0 );
+            }
+
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            int               a = r.nextInt( n );
+            int               b = r.nextInt( n - 1 );
+            b = b >= a ? b + 1 : b;
+
+            Endpoint ea = endpoints.get( a );
+            Endpoint eb = endpoints.get( b );
+            return cost( ea ) <= cost( eb ) ? ea : eb;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolException;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The redirect strategy of the {@link HttpClient}, follows all redirects like the {@link LaxRedirectStrategy} (and
+ * 308 with the same method) and remembers the permanent ones (301, 308).
+ * {@link HttpClient#executeAddress(String, HttpRequest)} rewrites the uri of a request with
+ * {@link #resolve(String, String)}, so a moved resource costs the extra round trip only once.
+ * <ul>
+ * <li>a redirect response with Cache-Control no-store or no-cache isn't remembered, max-age or Expires limit the
+ * lifetime of the entry, otherwise it is kept until it is evicted</li>
+ * <li>a 301 redirect is only applied to GET and HEAD requests because other methods are changed to GET by the
+ * redirect, a 308 redirect keeps the method and is applied to all requests</li>
+ * <li>the cache is bounded, the least recently used entry is evicted first</li>
+ * </ul>
+ */
+public class MemoizingRedirectStrategy
+        extends LaxRedirectStrategy
+{
+    private static final Logger LOGGER = LogManager.getLogger( MemoizingRedirectStrategy.class );
+
+    // protection against redirect loops
+    private static final int MAX_HOPS = 10;
+
+    private static final Set<String> SAFE_METHODS = Set.of( "GET", "HEAD" );
+
+    private final int maxEntries;
+
+    private final Map<String, Redirect> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private static class Redirect
+    {
+        private final String target;
+        private final int    status;
+        private final long   expiresAt;
+
+        private Redirect( String target, int status, long expiresAt )
+        {
+            this.target = target;
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param maxEntries the maximal number of remembered redirects, 0 disables the memoization
+     */
+    public MemoizingRedirectStrategy( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Redirect> eldest )
+            {
+                return size() > MemoizingRedirectStrategy.this.maxEntries;
+            }
+        };
+    }
+
+    private static long expiresAt( HttpResponse response, long now )
+    {
+        Map<String, String> cc = HttpCache.directives( response.getHeaders( "Cache-Control" ) );
+        if ( cc.containsKey( "no-store" ) || cc.containsKey( "no-cache" ) )
+        {
+            return now;
+        }
+        if ( cc.containsKey( "max-age" ) )
+        {
+            try
+            {
+                return now + Long.parseLong( cc.get( "max-age" ).trim() ) * 1000;
+            }
+            catch ( NumberFormatException e )
+            {
+                return now;
+            }
+        }
+
+        Header expires = response.getFirstHeader( "Expires" );
+        if ( null != expires )
+        {
+            Date d = DateUtils.parseDate( expires.getValue() );
+            return null == d ? now : d.getTime();
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    private static String source( org.apache.http.HttpRequest request, HttpContext context )
+            throws URISyntaxException
+    {
+        URI uri = new URI( request.getRequestLine().getUri() );
+        if ( !uri.isAbsolute() )
+        {
+            HttpHost target = HttpClientContext.adapt( context ).getTargetHost();
+            uri = URIUtils.rewriteURI( uri, target );
+        }
+
+        return uri.normalize().toString();
+    }
+
+    // the strategy of HttpClient 4.5.6 doesn't know 308
+    @Override
+    public boolean isRedirected( org.apache.http.HttpRequest request, HttpResponse response, HttpContext context )
+            throws ProtocolException
+    {
+        if ( response.getStatusLine().getStatusCode() == 308 )
+        {
+            return isRedirectable( request.getRequestLine().getMethod() ) && null != response.getFirstHeader(
+                    "Location" );
+        }
+
+        return super.isRedirected( request, response, context );
+    }
+
+    @Override
+    public HttpUriRequest getRedirect( org.apache.http.HttpRequest request, HttpResponse response,
+            HttpContext context ) throws ProtocolException
+    {
+        int            status   = response.getStatusLine().getStatusCode();
+        HttpUriRequest redirect = status == 308 ?
+                RequestBuilder.copy( request ).setUri( getLocationURI( request, response, context ) ).build() :
+                super.getRedirect( request, response, context );
+
+        if ( maxEntries > 0 && ( status == 301 || status == 308 ) )
+        {
+            long now       = System.currentTimeMillis();
+            long expiresAt = expiresAt( response, now );
+            try
+            {
+                String from = source( request, context );
+                String to   = redirect.getURI().normalize().toString();
+                if ( expiresAt > now && !from.equals( to ) )
+                {
+                    LOGGER.debug( "remember permanent redirect {} -> {}", from, to );
+                    synchronized ( entries )
+                    {
+                        entries.put( from, new Redirect( to, status, expiresAt ) );
+                    }
+                }
+            }
+            catch ( URISyntaxException e )
+            {
+                LOGGER.debug( "can't remember redirect: {}", e.getMessage() );
+            }
+        }
+
+        return redirect;
+    }
+
+    /**
+     * @param uriStr the request uri
+     * @param method the request method
+     * @return the final target of the remembered permanent redirects or the uri itself
+     */
+    public String resolve( String uriStr, String method )
+    {
+        if ( maxEntries <= 0 || null == uriStr )
+        {
+            return uriStr;
+        }
+
+        String current = uriStr;
+        long   now     = System.currentTimeMillis();
+        synchronized ( entries )
+        {
+            if ( entries.isEmpty() )
+            {
+                return uriStr;
+            }
+            for ( int i = 0; i < MAX_HOPS; ++i )
+            {
+                Redirect e = entries.get( current );
+                if ( null != e && e.expiresAt <= now )
+                {
+                    entries.remove( current );
+                    e = null;
+                }
+                if ( null == e || ( e.status == 301 && !SAFE_METHODS.contains( method ) ) )
+                {
+                    break;
+                }
+                current = e.target;
+            }
+        }
+
+        if ( !current.equals( uriStr ) )
+        {
+            hits.increment();
+            LOGGER.debug( "rewrite {} to {} by a remembered permanent redirect", uriStr, current );
+        }
+
+        return current;
+    }
+
+    /**
+     * @return a snapshot of the remembered redirects, source uri to target uri
+     */
+    public Map<String, String> getEntries()
+    {
+        Map<String, String> m = new LinkedHashMap<>();
+        synchronized ( entries )
+        {
+            entries.forEach( ( k, v ) -> m.put( k, v.target ) );
+        }
+
+        return m;
+    }
+
+    /**
+     * @param uriStr the source uri of a redirect to forget
+     */
+    public void remove( String uriStr )
+    {
+        synchronized ( entries )
+        {
+            entries.remove( uriStr );
+        }
+    }
+
+    public void clear()
+    {
+        synchronized ( entries )
+        {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the number of requests rewritten by a remembered redirect
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+}
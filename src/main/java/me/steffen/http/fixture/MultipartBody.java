@@ -0,0 +1,304 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * A multipart/form-data request body (RFC 7578) which is written part by part while the request is sent, see
+ * {@link HttpRequest#setMultipartBody(MultipartBody)}. File parts are streamed from disk, stream parts are opened
+ * and generated parts are written when the body is sent, so the payload is never held in memory as a whole.
+ * <ul>
+ * <li>if every part has a known size, the Content-Length is computed up front, otherwise the body is sent with
+ * chunked transfer encoding</li>
+ * <li>the body is repeatable (retries, signing) unless it contains a part added with an {@link InputStream}</li>
+ * </ul>
+ */
+public class MultipartBody
+        extends AbstractHttpEntity
+{
+    private static final Logger LOGGER = LogManager.getLogger( MultipartBody.class );
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private static final byte[] DASHES = { '-', '-' };
+
+    private final String boundary;
+
+    private final List<Part> parts = new ArrayList<>();
+
+    /**
+     * Writes the content of a generated part.
+     */
+    @FunctionalInterface
+    public interface PartWriter
+    {
+        void writeTo( OutputStream out ) throws IOException;
+    }
+
+    private static class Part
+    {
+        private final byte[]     header;
+        private final long       length;
+        private final boolean    repeatable;
+        private final PartWriter writer;
+
+        private Part( byte[] header, long length, boolean repeatable, PartWriter writer )
+        {
+            this.header = header;
+            this.length = length;
+            this.repeatable = repeatable;
+            this.writer = writer;
+        }
+    }
+
+    public MultipartBody()
+    {
+        this( "----fixture-" + UUID.randomUUID().toString().replace( "-", "" ) );
+    }
+
+    /**
+     * @param boundary the boundary of the parts, it must not occur in the content
+     */
+    public MultipartBody( String boundary )
+    {
+        this.boundary = boundary;
+        setContentType( "multipart/form-data; boundary=" + boundary );
+    }
+
+    // like the browsers: quotes and line breaks are percent encoded, other characters are sent as UTF-8
+    private static String quote( String s )
+    {
+        return "\"" + s.replace( "\"", "%22" ).replace( "\r", "%0D" ).replace( "\n", "%0A" ) + "\"";
+    }
+
+    private MultipartBody add( String name, String filename, ContentType contentType, long length,
+            boolean repeatable, PartWriter writer )
+    {
+        StringBuilder h = new StringBuilder();
+        h.append( "--" ).append( boundary ).append( "\r\n" );
+        h.append( "Content-Disposition: form-data; name=" ).append( quote( name ) );
+        if ( null != filename )
+        {
+            h.append( "; filename=" ).append( quote( filename ) );
+        }
+        h.append( "\r\n" );
+        if ( null != contentType )
+        {
+            h.append( "Content-Type: " ).append( contentType ).append( "\r\n" );
+        }
+        h.append( "\r\n" );
+
+        parts.add( new Part( h.toString().getBytes( StandardCharsets.UTF_8 ), length, repeatable, writer ) );
+        return this;
+    }
+
+    /**
+     * @param name  the field name
+     * @param value the text, sent as UTF-8 without Content-Type (text/plain)
+     * @return this
+     */
+    public MultipartBody addText( String name, String value )
+    {
+        return addText( name, value, null );
+    }
+
+    public MultipartBody addText( String name, String value, ContentType contentType )
+    {
+        byte[] data = value.getBytes( null == contentType || null == contentType.getCharset() ?
+                StandardCharsets.UTF_8 :
+                contentType.getCharset() );
+        return add( name, null, contentType, data.length, true, out -> out.write( data ) );
+    }
+
+    /**
+     * @param name        the field name
+     * @param file        the file, streamed from disk when the body is sent, its file name is sent as filename
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public MultipartBody addFile( String name, Path file, ContentType contentType )
+    {
+        return addFile( name, file.getFileName().toString(), file, contentType );
+    }
+
+    public MultipartBody addFile( String name, String filename, Path file, ContentType contentType )
+    {
+        long length = -1;
+        try
+        {
+            length = Files.size( file );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "can't get the size of '{}': {}", file, e.getMessage() );
+        }
+
+        return add( name, filename, null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType, length,
+                true, out -> Files.copy( file, out ) );
+    }
+
+    /**
+     * @param name        the field name
+     * @param filename    the filename or null
+     * @param opener      opens the content stream every time the body is sent
+     * @param length      the number of bytes, -1 if unknown
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public MultipartBody addStream( String name, String filename, Callable<InputStream> opener, long length,
+            ContentType contentType )
+    {
+        return add( name, filename, null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType, length,
+                true, out -> {
+                    try (InputStream in = open( opener ))
+                    {
+                        in.transferTo( out );
+                    }
+                } );
+    }
+
+    /**
+     * The stream can be sent only once, the body isn't repeatable.
+     *
+     * @param name        the field name
+     * @param filename    the filename or null
+     * @param stream      the content, closed after it is sent
+     * @param length      the number of bytes, -1 if unknown
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public MultipartBody addStream( String name, String filename, InputStream stream, long length,
+            ContentType contentType )
+    {
+        return add( name, filename, null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType, length,
+                false, out -> {
+                    try (InputStream in = stream)
+                    {
+                        in.transferTo( out );
+                    }
+                } );
+    }
+
+    /**
+     * A part whose content is generated while the body is sent, the writer is called for every attempt.
+     *
+     * @param name        the field name
+     * @param filename    the filename or null
+     * @param writer      writes the content, it must write exactly length bytes if the length is known
+     * @param length      the number of bytes, -1 if unknown
+     * @param contentType the content type, null for application/octet-stream
+     * @return this
+     */
+    public MultipartBody addGenerated( String name, String filename, PartWriter writer, long length,
+            ContentType contentType )
+    {
+        return add( name, filename, null == contentType ? ContentType.APPLICATION_OCTET_STREAM : contentType, length,
+                true, writer );
+    }
+
+    private static InputStream open( Callable<InputStream> opener ) throws IOException
+    {
+        try
+        {
+            return opener.call();
+        }
+        catch ( IOException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( "can't open the multipart stream", e );
+        }
+    }
+
+    public String getBoundary()
+    {
+        return boundary;
+    }
+
+    public int getPartCount()
+    {
+        return parts.size();
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return parts.stream().allMatch( p -> p.repeatable );
+    }
+
+    @Override
+    public boolean isChunked()
+    {
+        return getContentLength() < 0;
+    }
+
+    /**
+     * @return the size of the body or -1 if a part has an unknown size
+     */
+    @Override
+    public long getContentLength()
+    {
+        byte[] close  = ( "--" + boundary + "--\r\n" ).getBytes( StandardCharsets.UTF_8 );
+        long   length = close.length;
+        for ( Part p : parts )
+        {
+            if ( p.length < 0 )
+            {
+                return -1;
+            }
+            length += p.header.length + p.length + CRLF.length;
+        }
+
+        return length;
+    }
+
+    @Override
+    public void writeTo( OutputStream out ) throws IOException
+    {
+        for ( Part p : parts )
+        {
+            out.write( p.header );
+            p.writer.writeTo( out );
+            out.write( CRLF );
+        }
+        out.write( DASHES );
+        out.write( boundary.getBytes( StandardCharsets.UTF_8 ) );
+        out.write( DASHES );
+        out.write( CRLF );
+        out.flush();
+    }
+
+    /**
+     * Only for small bodies (i.e. logging), the content is buffered.
+     */
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeTo( bos );
+        return new ByteArrayInputStream( bos.toByteArray() );
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return !isRepeatable();
+    }
+}
@@ -0,0 +1,56 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import me.steffen.http.common.Function;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicNameValuePair;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * OAuth2 client credentials grant (RFC 6749 4.4), the client authenticates with HTTP Basic using the auth name and
+ * password.
+ */
+public class OAuth2TokenProvider
+        extends TokenProvider
+{
+    public OAuth2TokenProvider( HttpAuth auth, TokenProviderArgs args, CloseableHttpClient client,
+            ScheduledExecutorService scheduler )
+    {
+        super( auth, args, client, scheduler );
+    }
+
+    @Override
+    protected Token fetch( String currentToken ) throws IOException
+    {
+        List<NameValuePair> form = new ArrayList<>();
+        form.add( new BasicNameValuePair( "grant_type", "client_credentials" ) );
+        if ( null != args.getScope() && !args.getScope().isEmpty() )
+        {
+            form.add( new BasicNameValuePair( "scope", args.getScope() ) );
+        }
+
+        HttpPost post = new HttpPost( args.getUrl() );
+        post.setHeader( "Accept", "application/json" );
+        post.setHeader( HttpAuth.HEADER, "Basic " + Function.base64Encoding(
+                auth.getAuthName() + ":" + ( null == auth.getAuthPassword() ? "" : auth.getAuthPassword() ) ) );
+        post.setEntity( new UrlEncodedFormEntity( form, StandardCharsets.UTF_8 ) );
+
+        JsonNode json  = executeJson( post );
+        String   token = json.path( "access_token" ).asText( "" );
+        if ( token.isEmpty() )
+        {
+            throw new IOException( "token response of '" + args.getUrl() + "' contains no access_token" );
+        }
+
+        long ttl = json.has( "expires_in" ) ? json.get( "expires_in" ).asLong() * 1000 : args.getDefaultTtlMs();
+        return new Token( token, System.currentTimeMillis() + ttl );
+    }
+}
@@ -0,0 +1,309 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.Header;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lazy iterator over the pages of a paginated resource, created by {@link HttpClient#paginate}. A background task
+ * requests the pages in order and stays up to {@link PaginationArgs#prefetch()} pages ahead of the caller, so the
+ * next page is usually received while the caller processes the current one. Every page is requested with a copy of
+ * the given request through {@link HttpClient#execute}, next page uris of another host are requested without the
+ * authorization.
+ * <p>
+ * Close the iterator (or the stream) if it isn't consumed to the end.
+ */
+public class PageIterator
+        implements Iterator<ResponseData>, Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger( PageIterator.class );
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // <uri>; param; param, the parameters are checked for rel="next"
+    private static final Pattern LINK = Pattern.compile( "<([^>]*)>([^<]*)" );
+
+    private static final Pattern REL_NEXT = Pattern.compile(
+            "(?i)\\brel\\s*=\\s*(\"[^\"]*\\bnext\\b[^\"]*\"|next\\b)" );
+
+    private static final ResponseData END = new ResponseData();
+
+    private final HttpClient client;
+
+    private final String host;
+
+    private final String authorization;
+
+    private final List<String> addressAndArgs;
+
+    private final HttpRequest request;
+
+    private final PaginationArgs args;
+
+    private final BlockingQueue<ResponseData> pages = new LinkedBlockingQueue<>();
+
+    private final Semaphore prefetch;
+
+    private final Future<?> producer;
+
+    private volatile boolean closed = false;
+
+    private ResponseData next = null;
+
+    private boolean done = false;
+
+    PageIterator( HttpClient client, String host, String authorization, List<String> addressAndArgs,
+            HttpRequest request, PaginationArgs args, ExecutorService executor )
+    {
+        this.client = client;
+        this.host = host;
+        this.authorization = authorization;
+        this.addressAndArgs = new ArrayList<>( addressAndArgs );
+        this.request = request;
+        this.args = args;
+        this.prefetch = new Semaphore( Math.max( 1, args.prefetch() ) );
+        this.producer = executor.submit( this::produce );
+    }
+
+    /**
+     * @param link the value of a Link header
+     * @return the uri of the entry with rel="next" or null
+     */
+    public static String nextLink( String link )
+    {
+        Matcher m = LINK.matcher( null == link ? "" : link );
+        while ( m.find() )
+        {
+            if ( REL_NEXT.matcher( m.group( 2 ) ).find() )
+            {
+                return m.group( 1 ).trim();
+            }
+        }
+
+        return null;
+    }
+
+    private static JsonNode json( ResponseData rd, String pointer )
+    {
+        try
+        {
+            JsonNode root = MAPPER.readTree( rd.getBody() );
+            return null == root ? null : root.at( pointer );
+        }
+        catch ( IOException | IllegalArgumentException e )
+        {
+            LOGGER.debug( "page isn't a JSON document: {}", e.getMessage() );
+            return null;
+        }
+    }
+
+    private static boolean isEmpty( ResponseData rd, String itemsField )
+    {
+        if ( rd.getResponseContent().trim().isEmpty() )
+        {
+            return true;
+        }
+
+        JsonNode items = json( rd, itemsField );
+        return null != items && ( items.isMissingNode() || items.isArray() && items.size() == 0 );
+    }
+
+    private List<String> pageAddress( int page )
+    {
+        List<String> l = new ArrayList<>( addressAndArgs );
+        while ( l.size() <= args.pageArgument() + 1 )
+        {
+            l.add( "" );
+        }
+        l.set( args.pageArgument() + 1, Integer.toString( page ) );
+        return l;
+    }
+
+    /**
+     * @return the absolute uri of the next page or null if the page is the last one
+     */
+    private String nextUri( ResponseData rd, String currentUri, String firstUri ) throws URISyntaxException
+    {
+        String next;
+        if ( args.type() == EnumPagination.LINK_HEADER )
+        {
+            Header[] links = rd.getResponse().getHeaders( "Link" );
+            next = null;
+            for ( int i = 0; i < links.length && null == next; ++i )
+            {
+                next = nextLink( links[i].getValue() );
+            }
+        }
+        else
+        {
+            JsonNode cursor = json( rd, args.cursorField() );
+            next = null == cursor || !cursor.isValueNode() || cursor.isNull() ? null : cursor.asText();
+            if ( null != next && !next.isEmpty() && !next.startsWith( "http" ) && !next.startsWith( "/" ) )
+            {
+                return new URIBuilder( firstUri ).setParameter( args.cursorParameter(), next ).build().toString();
+            }
+        }
+
+        return null == next || next.isEmpty() ? null : new URI( currentUri ).resolve( next ).toString();
+    }
+
+    private ResponseData fetch( String uri )
+    {
+        String base = client.getConnectionUrl( host );
+        if ( !base.isEmpty() && uri.startsWith( base ) )
+        {
+            return client.execute( host, authorization, uri.substring( base.length() ), request.copy() );
+        }
+
+        return client.executeAddress( uri, request.copy() );
+    }
+
+    private void produce()
+    {
+        try
+        {
+            int    page     = args.firstPage();
+            String firstUri = client.getUriString( host, args.type() == EnumPagination.PAGE_NUMBER ?
+                    pageAddress( page ) :
+                    addressAndArgs );
+            String uri      = firstUri;
+            for ( int i = 0; i < args.maxPages() && !closed; ++i )
+            {
+                prefetch.acquire();
+
+                ResponseData rd = 0 == i || args.type() == EnumPagination.PAGE_NUMBER ?
+                        client.execute( host, authorization, args.type() == EnumPagination.PAGE_NUMBER ?
+                                pageAddress( page ) :
+                                addressAndArgs, request.copy() ) :
+                        fetch( uri );
+                boolean last = null == rd.getResponse() || rd.getStatus() / 100 != 2;
+                if ( !last && args.type() == EnumPagination.PAGE_NUMBER && isEmpty( rd, args.itemsField() ) )
+                {
+                    break;
+                }
+
+                pages.put( rd );
+                if ( last )
+                {
+                    break;
+                }
+
+                if ( args.type() == EnumPagination.PAGE_NUMBER )
+                {
+                    uri = client.getUriString( host, pageAddress( ++page ) );
+                }
+                else
+                {
+                    uri = nextUri( rd, uri, firstUri );
+                }
+                if ( null == uri )
+                {
+                    break;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( URISyntaxException | RuntimeException e )
+        {
+            LOGGER.error( "pagination of '{}' failed: {}", host, e );
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "pagination failed: " + e.getMessage() );
+            rd.setResponse( null );
+            pages.add( rd );
+        }
+        finally
+        {
+            pages.add( END );
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if ( null == next && !done )
+        {
+            try
+            {
+                next = pages.take();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                next = END;
+            }
+
+            if ( END == next )
+            {
+                done = true;
+                next = null;
+            }
+            else
+            {
+                prefetch.release();
+            }
+        }
+
+        return null != next;
+    }
+
+    @Override
+    public ResponseData next()
+    {
+        if ( !hasNext() )
+        {
+            throw new NoSuchElementException();
+        }
+
+        ResponseData rd = next;
+        next = null;
+        return rd;
+    }
+
+    /**
+     * @return a sequential stream of the pages, closing the stream closes this iterator
+     */
+    public Stream<ResponseData> stream()
+    {
+        return StreamSupport
+                .stream( Spliterators.spliteratorUnknownSize( this, Spliterator.ORDERED | Spliterator.NONNULL ),
+                        false )
+                .onClose( this::close );
+    }
+
+    /**
+     * stop requesting further pages
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        done = true;
+        producer.cancel( true );
+    }
+}
@@ -0,0 +1,35 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of a paginated request, see {@link HttpClient#paginate}.
+ * <ul>
+ * <li>type: how the next page is found, see {@link EnumPagination}</li>
+ * <li>cursorField: JSON pointer of the cursor in the body (CURSOR), a value starting with "http" or "/" is used as
+ * uri of the next page, a missing, null or empty value ends the pagination</li>
+ * <li>cursorParameter: the query parameter for a cursor value (CURSOR)</li>
+ * <li>pageArgument: the index of the page number placeholder in the address template, 0 for {0} (PAGE_NUMBER)</li>
+ * <li>firstPage: the number of the first page (PAGE_NUMBER)</li>
+ * <li>itemsField: JSON pointer of the items array, an empty array or body ends the pagination (PAGE_NUMBER)</li>
+ * <li>prefetch: the maximal number of pages requested before the caller asks for them, at least 1</li>
+ * <li>maxPages: the pagination ends after this number of pages</li>
+ * </ul>
+ * A response with a status other than 2xx is returned as last page.
+ */
+@Accessors( fluent = true )
+public class PaginationArgs
+{
+    // @formatter:off
+    @Setter @Getter private EnumPagination type            = EnumPagination.LINK_HEADER;
+    @Setter @Getter private String         cursorField     = "/next";
+    @Setter @Getter private String         cursorParameter = "cursor";
+    @Setter @Getter private int            pageArgument    = 0;
+    @Setter @Getter private int            firstPage       = 1;
+    @Setter @Getter private String         itemsField      = "";
+    @Setter @Getter private int            prefetch        = 1;
+    @Setter @Getter private int            maxPages        = 1000;
+    // @formatter:on
+}
@@ -0,0 +1,282 @@
+package me.steffen.http.fixture;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the requests executed at the same time to a host (normally to the size of the connection pool per host)
+ * and decides which waiting request gets the next free slot. So a request never waits in the pool itself, where all
+ * requests are served in arrival order.
+ * <ul>
+ * <li>the waiting request with the highest {@link EnumPriority} is served first, requests of the same priority in
+ * arrival order</li>
+ * <li>starvation protection: the oldest waiting request which exceeds the starvation time is served before all
+ * others</li>
+ * </ul>
+ * The queue times are recorded per priority.
+ */
+public class PriorityScheduler
+{
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<EnumPriority, ArrayDeque<Waiter>> queues = new EnumMap<>( EnumPriority.class );
+
+    private final Map<EnumPriority, LatencyStats> queueTimes = new EnumMap<>( EnumPriority.class );
+
+    private final int maxConcurrent;
+
+    private final long starvationNanos;
+
+    private final long maxQueueWaitNanos;
+
+    private int running = 0;
+
+    private long rejected = 0;
+
+    private static class Waiter
+    {
+        private final Condition condition;
+        private final long      enqueued = System.nanoTime();
+        private boolean         granted  = false;
+
+        private Waiter( Condition condition )
+        {
+            this.condition = condition;
+        }
+    }
+
+    public PriorityScheduler( PrioritySchedulerArgs args, int maxConcurrent )
+    {
+        this.maxConcurrent = Math.max( 1, maxConcurrent );
+        this.starvationNanos = TimeUnit.MILLISECONDS.toNanos( args.starvationMs() );
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos( args.maxQueueWaitMs() );
+        for ( EnumPriority p : EnumPriority.values() )
+        {
+            queues.put( p, new ArrayDeque<>() );
+            queueTimes.put( p, new LatencyStats() );
+        }
+    }
+
+    private boolean hasWaiters()
+    {
+        return queues.values().stream().anyMatch( q -> !q.isEmpty() );
+    }
+
+    /**
+     * Wait for a free slot at most the configured queue wait time.
+     *
+     * @param priority the request priority, null is NORMAL
+     * @return true if the request can be executed, in this case {@link #release()} must be called
+     */
+    public boolean acquire( EnumPriority priority )
+    {
+        return acquire( priority, TimeUnit.NANOSECONDS.toMillis( maxQueueWaitNanos ), null );
+    }
+
+    /**
+     * Wait for a free slot at most the given time (i.e. the configured queue wait time limited by the deadline of the
+     * request), a cancel of the handle stops the wait.
+     *
+     * @param priority     the request priority, null is NORMAL
+     * @param maxWaitMs    maximal wait time in milliseconds
+     * @param cancelHandle the handle of the waiting request, may be null
+     * @return true if the request can be executed, in this case {@link #release()} must be called
+     */
+    public boolean acquire( EnumPriority priority, long maxWaitMs, CancelHandle cancelHandle )
+    {
+        EnumPriority p = null == priority ? EnumPriority.NORMAL : priority;
+        lock.lock();
+        try
+        {
+            if ( running < maxConcurrent && !hasWaiters() )
+            {
+                running++;
+                queueTimes.get( p ).record( 0 );
+                return true;
+            }
+
+            Waiter   w      = new Waiter( lock.newCondition() );
+            Runnable wakeUp = () -> signal( w );
+            queues.get( p ).addLast( w );
+            if ( null != cancelHandle )
+            {
+                cancelHandle.addWaiter( wakeUp );
+            }
+            try
+            {
+                return await( w, p, maxWaitMs, cancelHandle );
+            }
+            finally
+            {
+                if ( null != cancelHandle )
+                {
+                    cancelHandle.removeWaiter( wakeUp );
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held, the waiter is queued
+    private boolean await( Waiter w, EnumPriority p, long maxWaitMs, CancelHandle cancelHandle )
+    {
+        long remaining = TimeUnit.MILLISECONDS.toNanos( maxWaitMs );
+        while ( !w.granted )
+        {
+            if ( remaining <= 0 || CancelHandle.isCancelled( cancelHandle ) )
+            {
+                queues.get( p ).remove( w );
+                rejected++;
+                return false;
+            }
+            try
+            {
+                remaining = w.condition.awaitNanos( remaining );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                if ( w.granted )
+                {
+                    // the slot was already handed over, pass it on
+                    running--;
+                    grantNext();
+                }
+                else
+                {
+                    queues.get( p ).remove( w );
+                }
+                rejected++;
+                return false;
+            }
+        }
+
+        queueTimes.get( p ).record( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - w.enqueued ) );
+        return true;
+    }
+
+    private void signal( Waiter w )
+    {
+        lock.lock();
+        try
+        {
+            w.condition.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * the request is finished, the slot is handed over to the next waiting request
+     */
+    public void release()
+    {
+        lock.lock();
+        try
+        {
+            running--;
+            grantNext();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void grantNext()
+    {
+        while ( running < maxConcurrent )
+        {
+            ArrayDeque<Waiter> next   = null;
+            long               now    = System.nanoTime();
+            long               oldest = starvationNanos;
+
+            // the oldest starving request first
+            for ( ArrayDeque<Waiter> q : queues.values() )
+            {
+                Waiter w = q.peekFirst();
+                if ( null != w && now - w.enqueued > oldest )
+                {
+                    next = q;
+                    oldest = now - w.enqueued;
+                }
+            }
+            // otherwise the highest priority
+            if ( null == next )
+            {
+                next = queues.values().stream().filter( q -> !q.isEmpty() ).findFirst().orElse( null );
+            }
+            if ( null == next )
+            {
+                return;
+            }
+
+            Waiter w = next.pollFirst();
+            w.granted = true;
+            running++;
+            w.condition.signal();
+        }
+    }
+
+    /**
+     * @param priority the priority
+     * @return the queue times of the requests with this priority
+     */
+    public LatencyStats getQueueTimes( EnumPriority priority )
+    {
+        return queueTimes.get( priority );
+    }
+
+    public long getMaxQueueWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( maxQueueWaitNanos );
+    }
+
+    public int getQueueDepth( EnumPriority priority )
+    {
+        lock.lock();
+        try
+        {
+            return queues.get( priority ).size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning()
+    {
+        lock.lock();
+        try
+        {
+            return running;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected()
+    {
+        lock.lock();
+        try
+        {
+            return rejected;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
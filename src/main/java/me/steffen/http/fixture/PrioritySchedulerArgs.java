@@ -0,0 +1,24 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments of the {@link PriorityScheduler}.
+ * <ul>
+ * <li>maxConcurrent: requests executed at the same time per host, 0 uses the pool size per host (maxConnPerRoute or
+ * the maxLimit of the concurrency limit)</li>
+ * <li>starvationMs: a request waiting longer is served before all requests of a higher priority</li>
+ * <li>maxQueueWaitMs: a request waiting longer is rejected</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class PrioritySchedulerArgs
+{
+    // @formatter:off
+    @Setter @Getter private int  maxConcurrent  = 0;
+    @Setter @Getter private long starvationMs   = 1000L;
+    @Setter @Getter private long maxQueueWaitMs = 60000L;
+    // @formatter:on
+}
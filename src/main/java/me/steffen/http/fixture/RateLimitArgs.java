@@ -0,0 +1,38 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of a {@link RateLimiter}, part of a connection or an authorization entry in the
+ * {@link HttpClientConfig} file:
+ * <pre>
+ * "connections": { "partner": { "protocol": "https", "url": "api.partner.com",
+ *                               "rateLimit": { "permitsPerSecond": 20, "burst": 5, "maxWaitMs": 2000 } } }
+ * </pre>
+ */
+public class RateLimitArgs
+{
+    // @formatter:off
+    /** the sustained request rate */
+    @Getter @Setter private double permitsPerSecond = 10.0;
+
+    /** number of requests which can be sent at once after an idle time */
+    @Getter @Setter private int burst = 1;
+
+    /** maximal time a request waits for a permit, 0 rejects a request immediately if no permit is available */
+    @Getter @Setter private long maxWaitMs = 0L;
+    // @formatter:on
+
+    public RateLimitArgs()
+    {
+        // Jackson need the default constructor
+    }
+
+    public RateLimitArgs( double permitsPerSecond, int burst, long maxWaitMs )
+    {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxWaitMs = maxWaitMs;
+    }
+}
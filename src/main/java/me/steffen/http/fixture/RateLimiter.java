@@ -0,0 +1,179 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free token bucket implemented as generic cell rate algorithm (GCRA). The only state is the theoretical
+ * arrival time of the next request, a permit is a compare-and-set of this time. A request arriving too early for the
+ * burst tolerance is rejected (non-blocking) or reserves its slot and sleeps until the slot is reached (blocking).
+ */
+public class RateLimiter
+{
+    @Getter private final String name;
+
+    private final long intervalNanos;
+
+    private final long toleranceNanos;
+
+    private final long maxWaitNanos;
+
+    private final AtomicLong theoreticalArrival = new AtomicLong( Long.MIN_VALUE );
+
+    private final LongAdder permitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder waitedNanos = new LongAdder();
+
+    public RateLimiter( String name, RateLimitArgs args )
+    {
+        this.name = name;
+        this.intervalNanos = Math.max( 1, (long) ( TimeUnit.SECONDS.toNanos( 1 ) / args.getPermitsPerSecond() ) );
+        this.toleranceNanos = intervalNanos * Math.max( 0, args.getBurst() - 1 );
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos( args.getMaxWaitMs() );
+    }
+
+    /**
+     * @param maxWait maximal wait time in nanoseconds
+     * @return the time to wait for the reserved permit or -1 if the wait time is too long
+     */
+    private long reserve( long maxWait )
+    {
+        while ( true )
+        {
+            long now  = System.nanoTime();
+            long tat  = theoreticalArrival.get();
+            long base = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+            long wait = base - now - toleranceNanos;
+            if ( wait > maxWait )
+            {
+                return -1;
+            }
+            if ( theoreticalArrival.compareAndSet( tat, base + intervalNanos ) )
+            {
+                return Math.max( 0, wait );
+            }
+        }
+    }
+
+    /**
+     * @return true if a permit is available now
+     */
+    public boolean tryAcquire()
+    {
+        if ( reserve( 0 ) < 0 )
+        {
+            rejected.increment();
+            return false;
+        }
+
+        permitted.increment();
+        return true;
+    }
+
+    /**
+     * Wait for a permit at most the given time.
+     *
+     * @param maxWaitMs maximal wait time in milliseconds
+     * @return true if a permit was acquired, false if the wait time was too long or the thread was interrupted
+     */
+    public boolean acquire( long maxWaitMs )
+    {
+        return acquire( maxWaitMs, null );
+    }
+
+    /**
+     * Wait for a permit at most the given time, a cancel of the handle stops the wait (the reserved permit is lost).
+     *
+     * @param maxWaitMs    maximal wait time in milliseconds
+     * @param cancelHandle the handle of the waiting request, may be null
+     * @return true if a permit was acquired, false if the wait time was too long, the request was cancelled or the
+     * thread was interrupted
+     */
+    public boolean acquire( long maxWaitMs, CancelHandle cancelHandle )
+    {
+        long wait = CancelHandle.isCancelled( cancelHandle ) ? -1 : reserve( TimeUnit.MILLISECONDS.toNanos(
+                maxWaitMs ) );
+        if ( wait < 0 )
+        {
+            rejected.increment();
+            return false;
+        }
+
+        if ( wait > 0 )
+        {
+            Thread   waiter = Thread.currentThread();
+            Runnable wakeUp = () -> LockSupport.unpark( waiter );
+            long     end    = System.nanoTime() + wait;
+            if ( null != cancelHandle )
+            {
+                cancelHandle.addWaiter( wakeUp );
+            }
+            try
+            {
+                for ( long remaining = wait; remaining > 0; remaining = end - System.nanoTime() )
+                {
+                    if ( CancelHandle.isCancelled( cancelHandle ) || waiter.isInterrupted() )
+                    {
+                        rejected.increment();
+                        return false;
+                    }
+                    LockSupport.parkNanos( this, remaining );
+                }
+            }
+            finally
+            {
+                if ( null != cancelHandle )
+                {
+                    cancelHandle.removeWaiter( wakeUp );
+                }
+            }
+            waitedNanos.add( wait );
+        }
+
+        permitted.increment();
+        return true;
+    }
+
+    /**
+     * acquire a permit using the configured maximal wait time, non-blocking if the wait time is 0
+     *
+     * @return true if a permit was acquired
+     */
+    public boolean acquire()
+    {
+        return maxWaitNanos == 0 ? tryAcquire() : acquire( TimeUnit.NANOSECONDS.toMillis( maxWaitNanos ) );
+    }
+
+    public long getMaxWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( maxWaitNanos );
+    }
+
+    public long getPermitted()
+    {
+        return permitted.sum();
+    }
+
+    public long getRejected()
+    {
+        return rejected.sum();
+    }
+
+    public long getWaitedMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( waitedNanos.sum() );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "RateLimiter{name=%s, permitted=%d, rejected=%d, waitedMs=%d}", name, getPermitted(),
+                getRejected(), getWaitedMillis() );
+    }
+}
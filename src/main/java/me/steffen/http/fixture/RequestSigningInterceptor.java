@@ -0,0 +1,147 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import me.steffen.http.security.SignatureEngine;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Adds HTTP message signatures (RFC 9421) to every request sent by the {@link HttpClient}, including retries and
+ * redirects. The signature covers the method, the target uri and the <code>Content-Digest</code> header (RFC 9530)
+ * of the body. The body is streamed directly into the digest, a not repeatable body can't be read twice and is not
+ * covered by the signature.
+ */
+public class RequestSigningInterceptor
+        implements HttpRequestInterceptor
+{
+    private static final Logger LOGGER = LogManager.getLogger( RequestSigningInterceptor.class );
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial( () -> {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    } );
+
+    @Getter private final SignatureEngine signatureEngine;
+
+    @Getter private final String keyAlias;
+
+    @Getter private final String label;
+
+    public RequestSigningInterceptor( SignatureEngine signatureEngine, String keyAlias )
+    {
+        this( signatureEngine, keyAlias, "sig1" );
+    }
+
+    public RequestSigningInterceptor( SignatureEngine signatureEngine, String keyAlias, String label )
+    {
+        this.signatureEngine = signatureEngine;
+        this.keyAlias = keyAlias;
+        this.label = label;
+    }
+
+    private static String digest( HttpEntity entity ) throws IOException
+    {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        entity.writeTo( new OutputStream()
+        {
+            @Override
+            public void write( int b )
+            {
+                md.update( (byte) b );
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len )
+            {
+                md.update( b, off, len );
+            }
+        } );
+
+        return "sha-256=:" + Base64.getEncoder().encodeToString( md.digest() ) + ":";
+    }
+
+    private static String targetUri( org.apache.http.HttpRequest request, HttpContext context )
+    {
+        String  uri    = request.getRequestLine().getUri();
+        HttpHost target = HttpClientContext.adapt( context ).getTargetHost();
+        if ( uri.startsWith( "/" ) && null != target )
+        {
+            uri = target.toURI() + uri;
+        }
+
+        return uri;
+    }
+
+    @Override
+    public void process( org.apache.http.HttpRequest request, HttpContext context ) throws HttpException, IOException
+    {
+        List<String>  components = new ArrayList<>();
+        StringBuilder base       = new StringBuilder();
+
+        components.add( "@method" );
+        base.append( "\"@method\": " ).append( request.getRequestLine().getMethod() ).append( '\n' );
+        components.add( "@target-uri" );
+        base.append( "\"@target-uri\": " ).append( targetUri( request, context ) ).append( '\n' );
+
+        HttpEntity entity = request instanceof HttpEntityEnclosingRequest ?
+                ( (HttpEntityEnclosingRequest) request ).getEntity() :
+                null;
+        if ( null != entity )
+        {
+            if ( entity.isRepeatable() )
+            {
+                String digest = digest( entity );
+                request.setHeader( "Content-Digest", digest );
+                components.add( "content-digest" );
+                base.append( "\"content-digest\": " ).append( digest ).append( '\n' );
+            }
+            else
+            {
+                LOGGER.warn( "request body isn't repeatable, the signature doesn't cover the body" );
+            }
+        }
+
+        String alg = SignatureEngine.getHttpSignatureAlgorithm( signatureEngine.getAlgorithm( keyAlias ) );
+        String params = components.stream().map( c -> '"' + c + '"' ).collect( Collectors.joining( " ", "(", ")" ) )
+                + ";created=" + System.currentTimeMillis() / 1000 + ";keyid=\"" + keyAlias + "\"" + ( null == alg ?
+                "" :
+                ";alg=\"" + alg + "\"" );
+        base.append( "\"@signature-params\": " ).append( params );
+
+        try
+        {
+            byte[] signature = signatureEngine.sign( keyAlias, base.toString().getBytes( StandardCharsets.UTF_8 ) );
+            request.setHeader( "Signature-Input", label + "=" + params );
+            request.setHeader( "Signature", label + "=:" + Base64.getEncoder().encodeToString( signature ) + ":" );
+        }
+        catch ( GeneralSecurityException e )
+        {
+            throw new HttpException( "can't sign request with key alias '" + keyAlias + "': " + e.getMessage(), e );
+        }
+    }
+}
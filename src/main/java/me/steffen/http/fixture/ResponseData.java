@@ -1,22 +1,32 @@
 package me.steffen.http.fixture;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import lombok.Setter;
 import me.steffen.http.common.Function;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.ParseException;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ContentType;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpCookie;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -25,17 +35,57 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * The response of a request. The body is kept as bytes and decoded on demand, as text by
+ * {@link #getResponseContent()} or as object by {@link #as(Class)}. If the request was sent with
+ * {@link HttpRequest#setStreamResponse(boolean)} the body is read from the connection when it is used first, close
+ * the response data if the body isn't read.
+ */
 public class ResponseData
+        implements Closeable
 {
     private static final Logger LOGGER = LogManager.getLogger( ResponseData.class );
 
+    private static final byte[] EMPTY = new byte[0];
+
+    // duration of the last network attempt until the response is read, without the waits for local limits and retries
     @Getter @Setter private long responseTimeMillis;
 
+    // number of retries done by the retry policy of the client until this response was received
+    @Getter @Setter private int retryCount;
+
+    // the call was stopped because the deadline of the request expired
+    @Getter @Setter private boolean deadlineExceeded;
+
+    // the call was stopped by the cancel handle of the request
+    @Getter @Setter private boolean cancelled;
+
+    // the request wasn't sent, a local limit of the client rejected it (no failure of the server)
+    @Getter @Setter private boolean rejected;
+
+    // how the cache of the client answered the request
+    @Getter @Setter private EnumCacheStatus cacheStatus = EnumCacheStatus.NONE;
+
+    // body sizes in bytes, *EncodedBytes as transferred, the others before compression / after decompression,
+    // -1 if unknown (i.e. a response from the cache)
+    @Getter @Setter private long requestBytes         = -1;
+    @Getter @Setter private long requestEncodedBytes  = -1;
+    @Getter @Setter private long responseEncodedBytes = -1;
+    @Getter @Setter private long responseBytes        = -1;
+
     @Getter private CloseableHttpResponse response;
 
     @Getter private final List<HttpCookie> responseCookies = new LinkedList<>();
 
-    @Getter private String responseContent = "";
+    // null until a streamed body is read
+    private byte[] body = EMPTY;
+
+    private Charset charset = StandardCharsets.ISO_8859_1;
+
+    // decoded from the body on first use
+    private String responseContent = "";
+
+    private ContentEncodingInterceptor.Counts counts;
 
     @Getter private int status;
 
@@ -43,6 +93,50 @@ public class ResponseData
 
     @Getter private String contenttype;
 
+    /**
+     * @return a new object with the same response, content and state, i.e. for callers sharing one request
+     */
+    public ResponseData copy()
+    {
+        ResponseData rd = new ResponseData();
+        rd.responseTimeMillis = responseTimeMillis;
+        rd.retryCount = retryCount;
+        rd.deadlineExceeded = deadlineExceeded;
+        rd.cancelled = cancelled;
+        rd.rejected = rejected;
+        rd.cacheStatus = cacheStatus;
+        rd.requestBytes = requestBytes;
+        rd.requestEncodedBytes = requestEncodedBytes;
+        rd.responseEncodedBytes = responseEncodedBytes;
+        rd.responseBytes = responseBytes;
+        rd.response = response;
+        rd.responseCookies.addAll( responseCookies );
+        rd.body = body;
+        rd.charset = charset;
+        rd.responseContent = responseContent;
+        rd.counts = counts;
+        rd.status = status;
+        rd.lastError = lastError;
+        rd.contenttype = contenttype;
+        return rd;
+    }
+
+    /**
+     * @param counts the {@link ContentEncodingInterceptor.Counts} of the execution or null
+     */
+    void setContentCounts( Object counts )
+    {
+        if ( counts instanceof ContentEncodingInterceptor.Counts )
+        {
+            ContentEncodingInterceptor.Counts c = (ContentEncodingInterceptor.Counts) counts;
+            this.counts = c;
+            requestBytes = c.getRequestBytes();
+            requestEncodedBytes = c.getRequestEncodedBytes();
+            responseEncodedBytes = c.getResponseEncodedBytes();
+            responseBytes = c.getResponseBytes();
+        }
+    }
+
     public static String cookieToString( HttpCookie c )
     {
         return MessageFormat.format( "{0}{1}{2}{3}{4}", c.getValue(), optionalValue( "; path=", c.getPath() ),
@@ -83,6 +177,21 @@ public class ResponseData
         info.put( "descr", HttpStatusCode.explain( status ) );
         info.put( "content-type", contenttype );
         info.put( "time_ms", responseTimeMillis );
+        info.put( "retries", retryCount );
+        if ( cacheStatus != EnumCacheStatus.NONE )
+        {
+            info.put( "cache", cacheStatus.name() );
+        }
+        if ( responseEncodedBytes >= 0 )
+        {
+            info.put( "bytes", responseBytes );
+            info.put( "encoded_bytes", responseEncodedBytes );
+        }
+        if ( deadlineExceeded || cancelled )
+        {
+            info.put( "deadline_exceeded", deadlineExceeded );
+            info.put( "cancelled", cancelled );
+        }
         if ( withHeader )
         {
             ObjectNode cl = respObj.putObject( "cookies" );
@@ -92,7 +201,7 @@ public class ResponseData
         }
         if ( withData )
         {
-            respObj.put( "content", responseContent );
+            respObj.put( "content", getResponseContent() );
         }
 
         try
@@ -116,6 +225,19 @@ public class ResponseData
         LOGGER.log( ll, "Status            : {} {}", status, HttpStatusCode.explain( status ) );
         LOGGER.log( ll, "Content-Type      : {}", contenttype );
         LOGGER.log( ll, "Response-Time(ms) : {}", responseTimeMillis );
+        LOGGER.log( ll, "Retries           : {}", retryCount );
+        if ( cacheStatus != EnumCacheStatus.NONE )
+        {
+            LOGGER.log( ll, "Cache             : {}", cacheStatus );
+        }
+        if ( responseEncodedBytes >= 0 )
+        {
+            LOGGER.log( ll, "Bytes             : {} ({} transferred)", responseBytes, responseEncodedBytes );
+        }
+        if ( deadlineExceeded || cancelled )
+        {
+            LOGGER.log( ll, "Stopped           : {}", deadlineExceeded ? "deadline exceeded" : "cancelled" );
+        }
 
         if ( withHeader )
         {
@@ -126,7 +248,7 @@ public class ResponseData
                     responseCookies.stream().map( ResponseData::cookieToString ).collect( Collectors.toList() ) );
         }
 
-        LOGGER.log( ll, "----------------- response data -----------------\n{}\n", responseContent );
+        LOGGER.log( ll, "----------------- response data -----------------\n{}\n", getResponseContent() );
         LOGGER.log( ll, "-------------------------------------------------" );
     }
 
@@ -166,9 +288,20 @@ public class ResponseData
     }
 
     public void setResponse( CloseableHttpResponse response )
+    {
+        setResponse( response, false );
+    }
+
+    /**
+     * @param response  the response or null
+     * @param streaming true to read the body from the connection when it is used first
+     */
+    public void setResponse( CloseableHttpResponse response, boolean streaming )
     {
         this.response = response;
+        body = EMPTY;
         responseContent = "";
+        status = 0;
         responseCookies.clear();
 
         if ( null != response )
@@ -176,14 +309,12 @@ public class ResponseData
             HttpEntity entity = response.getEntity();
             if ( null != entity )
             {
-                try
+                charset = charset( entity );
+                body = null;
+                responseContent = null;
+                if ( !streaming )
                 {
-                    this.responseContent = EntityUtils.toString( entity );
-                }
-                catch ( IOException e )
-                {
-                    LOGGER.error( e );
-                    this.responseContent = "";
+                    getBody();
                 }
             }
 
@@ -200,4 +331,156 @@ public class ResponseData
             contenttype = getHeader( "Content-Type" );
         }
     }
+
+    // the charset of the content type, the default of the mime type or ISO-8859-1 (like EntityUtils.toString)
+    private static Charset charset( HttpEntity entity )
+    {
+        try
+        {
+            ContentType ct = ContentType.get( entity );
+            if ( null != ct && null != ct.getCharset() )
+            {
+                return ct.getCharset();
+            }
+
+            ContentType byMime = null == ct ? null : ContentType.getByMimeType( ct.getMimeType() );
+            if ( null != byMime && null != byMime.getCharset() )
+            {
+                return byMime.getCharset();
+            }
+        }
+        catch ( ParseException | IllegalArgumentException e )
+        {
+            LOGGER.debug( "invalid content type, the body is decoded as ISO-8859-1: {}", e.getMessage() );
+        }
+
+        return StandardCharsets.ISO_8859_1;
+    }
+
+    /**
+     * @return the body decoded with the charset of the content type, a streamed body is read and buffered
+     */
+    public String getResponseContent()
+    {
+        if ( null == responseContent )
+        {
+            responseContent = new String( getBody(), charset );
+        }
+
+        return responseContent;
+    }
+
+    /**
+     * @return the body, a streamed body is read and buffered
+     */
+    public synchronized byte[] getBody()
+    {
+        if ( null == body )
+        {
+            try
+            {
+                body = EntityUtils.toByteArray( response.getEntity() );
+            }
+            catch ( IOException e )
+            {
+                LOGGER.error( e );
+                lastError = e.getMessage();
+                body = EMPTY;
+            }
+            setContentCounts( counts );
+        }
+
+        return body;
+    }
+
+    /**
+     * A streamed body can be read only once, by this stream or by another getter.
+     *
+     * @return a stream of the body, the stream of the connection for an unread streamed body
+     */
+    public synchronized InputStream getBodyStream() throws IOException
+    {
+        if ( null != body )
+        {
+            return new ByteArrayInputStream( body );
+        }
+
+        body = EMPTY;
+        return new FilterInputStream( response.getEntity().getContent() )
+        {
+            @Override
+            public void close() throws IOException
+            {
+                super.close();
+                setContentCounts( counts );
+            }
+        };
+    }
+
+    /**
+     * Binds the JSON body with a cached reader of the type, a streamed body is bound directly from the connection.
+     *
+     * @param type the type of the value
+     * @return the value or null if there is no body or it can't be decoded (see {@link #getLastError()})
+     */
+    public <T> T as( Class<T> type )
+    {
+        return as( JsonCodec.reader( type ), type.getName() );
+    }
+
+    /**
+     * @param type the generic type of the value, i.e. <code>new TypeReference&lt;List&lt;Item&gt;&gt;() {}</code>
+     * @return the value or null if there is no body or it can't be decoded (see {@link #getLastError()})
+     */
+    public <T> T as( TypeReference<T> type )
+    {
+        return as( JsonCodec.reader( type ), type.getType().getTypeName() );
+    }
+
+    private synchronized <T> T as( ObjectReader reader, String typeName )
+    {
+        if ( null == response || ( null != body && body.length == 0 ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            if ( null != body )
+            {
+                return reader.readValue( body );
+            }
+
+            try (InputStream in = getBodyStream())
+            {
+                return reader.readValue( in );
+            }
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "can't decode the response body as {}: {}", typeName, e.getMessage() );
+            lastError = e.getMessage();
+            return null;
+        }
+    }
+
+    /**
+     * Releases the connection of an unread streamed body, nothing to do for a buffered body.
+     */
+    @Override
+    public synchronized void close()
+    {
+        if ( null == body && null != response )
+        {
+            body = EMPTY;
+            try
+            {
+                response.close();
+            }
+            catch ( IOException e )
+            {
+                LOGGER.debug( "closing the response failed: {}", e.getMessage() );
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package me.steffen.http.fixture;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A retry budget per key (i.e. the target host). Every successful response deposits a fraction of a token, every
+ * retry must withdraw a whole token. So the retries are limited to a ratio of the successful requests and a failing
+ * host doesn't refill its own budget, it gets no more retries once the budget is used up. The tokens are stored as
+ * thousandths in an {@link AtomicLong}, no locking is needed.
+ */
+public class RetryBudget
+{
+    private static final long SCALE = 1000L;
+
+    private final Map<String, AtomicLong> tokens = new ConcurrentHashMap<>();
+
+    private final long deposit;
+
+    private final long minTokens;
+
+    private final long maxTokens;
+
+    /**
+     * @param ratio     tokens added by every request
+     * @param minTokens tokens of a new key
+     * @param maxTokens maximal tokens per key
+     */
+    public RetryBudget( double ratio, double minTokens, double maxTokens )
+    {
+        this.deposit = (long) ( ratio * SCALE );
+        this.minTokens = (long) ( minTokens * SCALE );
+        this.maxTokens = Math.max( this.minTokens, (long) ( maxTokens * SCALE ) );
+    }
+
+    private AtomicLong bucket( String key )
+    {
+        return tokens.computeIfAbsent( key, k -> new AtomicLong( minTokens ) );
+    }
+
+    /**
+     * a request succeeded
+     */
+    public void deposit( String key )
+    {
+        bucket( key ).accumulateAndGet( deposit, ( v, d ) -> Math.min( maxTokens, v + d ) );
+    }
+
+    /**
+     * @return true if a token was available for a retry
+     */
+    public boolean tryWithdraw( String key )
+    {
+        AtomicLong b = bucket( key );
+        long       v;
+        do
+        {
+            v = b.get();
+            if ( v < SCALE )
+            {
+                return false;
+            }
+        }
+        while ( !b.compareAndSet( v, v - SCALE ) );
+
+        return true;
+    }
+
+    /**
+     * @return the available retries for the key
+     */
+    public double getTokens( String key )
+    {
+        return bucket( key ).get() / (double) SCALE;
+    }
+}
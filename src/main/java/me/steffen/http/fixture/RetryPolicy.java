@@ -0,0 +1,225 @@
+package me.steffen.http.fixture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The retry handling of the {@link HttpClient}, used for I/O errors (as retry handler) and for the configured status
+ * codes (as service unavailable strategy). Every retry waits an exponential backoff with jitter or the time given by
+ * the Retry-After header and needs a token of the {@link RetryBudget} of the target host, the budget is filled by the
+ * successful responses (as response interceptor). The number of retries of a request is stored in the context
+ * attribute {@link #RETRY_COUNT}.
+ */
+public class RetryPolicy
+        extends DefaultHttpRequestRetryHandler
+        implements ServiceUnavailableRetryStrategy, HttpRequestInterceptor, HttpResponseInterceptor
+{
+    private static final Logger LOGGER = LogManager.getLogger( RetryPolicy.class );
+
+    public static final String RETRY_COUNT = "me.steffen.http.retry-count";
+
+    // set this context attribute to Boolean.TRUE to disable the retries of a request (i.e. for health probes)
+    public static final String NO_RETRY = "me.steffen.http.no-retry";
+
+    // context attribute with the deadline of the request in epoch milliseconds, no retry ends behind it
+    public static final String DEADLINE = "me.steffen.http.deadline";
+
+    private final RetryPolicyArgs args;
+
+    private final RetryBudget budget;
+
+    private final ThreadLocal<Long> nextInterval = ThreadLocal.withInitial( () -> 0L );
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public RetryPolicy( RetryPolicyArgs args )
+    {
+        super( args.maxRetries(), args.requestSentRetryEnabled() );
+        this.args = args;
+        this.budget = new RetryBudget( args.budgetRatio(), args.budgetMinTokens(), args.budgetMaxTokens() );
+    }
+
+    private static String hostKey( HttpContext context )
+    {
+        HttpHost target = HttpClientContext.adapt( context ).getTargetHost();
+        return null == target ? "" : target.toHostString();
+    }
+
+    /**
+     * @param retry the number of the retry, starting with 1
+     * @return the backoff with full jitter
+     */
+    public long backoffMs( int retry )
+    {
+        long cap = args.baseDelayMs() << Math.min( 30, retry - 1 );
+        cap = cap <= 0 ? args.maxDelayMs() : Math.min( args.maxDelayMs(), cap );
+        return ThreadLocalRandom.current().nextLong( cap + 1 );
+    }
+
+    /**
+     * @param response the response
+     * @return the delay of the Retry-After header in milliseconds or -1 if not available
+     */
+    public static long retryAfterMs( HttpResponse response )
+    {
+        Header h = response.getFirstHeader( "Retry-After" );
+        if ( null == h || null == h.getValue() )
+        {
+            return -1;
+        }
+
+        String v = h.getValue().trim();
+        try
+        {
+            return Math.max( 0, Long.parseLong( v ) * 1000 );
+        }
+        catch ( NumberFormatException e )
+        {
+            Date d = DateUtils.parseDate( v );
+            return null == d ? -1 : Math.max( 0, d.getTime() - System.currentTimeMillis() );
+        }
+    }
+
+    private boolean acquire( HttpContext context )
+    {
+        if ( Boolean.TRUE.equals( context.getAttribute( NO_RETRY ) ) )
+        {
+            return false;
+        }
+
+        String host = hostKey( context );
+        if ( !budget.tryWithdraw( host ) )
+        {
+            budgetExhausted.increment();
+            LOGGER.warn( "retry budget of '{}' exhausted, no retry", host );
+            return false;
+        }
+
+        retries.increment();
+        Object count = context.getAttribute( RETRY_COUNT );
+        context.setAttribute( RETRY_COUNT, count instanceof Integer ? (Integer) count + 1 : 1 );
+        return true;
+    }
+
+    private static boolean behindDeadline( HttpContext context, long delay )
+    {
+        Object deadline = context.getAttribute( DEADLINE );
+        if ( deadline instanceof Long && System.currentTimeMillis() + delay >= (Long) deadline )
+        {
+            LOGGER.debug( "no retry, the deadline expires within the retry delay of {} ms", delay );
+            return true;
+        }
+
+        return false;
+    }
+
+    // retries and redirects use the same context, the count is set by the first attempt
+    @Override
+    public void process( org.apache.http.HttpRequest request, HttpContext context )
+    {
+        if ( null == context.getAttribute( RETRY_COUNT ) )
+        {
+            context.setAttribute( RETRY_COUNT, 0 );
+        }
+    }
+
+    // only a successful response deposits into the budget, so a failing host can't refill it with its failures
+    @Override
+    public void process( HttpResponse response, HttpContext context )
+    {
+        int status = response.getStatusLine().getStatusCode();
+        if ( status < 500 && !args.retryStatusCodes().contains( status ) )
+        {
+            budget.deposit( hostKey( context ) );
+        }
+    }
+
+    @Override
+    public boolean retryRequest( IOException exception, int executionCount, HttpContext context )
+    {
+        long delay = backoffMs( executionCount );
+        if ( !super.retryRequest( exception, executionCount, context ) || behindDeadline( context, delay )
+                || !acquire( context ) )
+        {
+            return false;
+        }
+
+        LOGGER.debug( "retry {} after {} in {} ms", executionCount, exception.getClass().getSimpleName(), delay );
+        try
+        {
+            Thread.sleep( delay );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean retryRequest( HttpResponse response, int executionCount, HttpContext context )
+    {
+        int status = response.getStatusLine().getStatusCode();
+        if ( executionCount > args.maxRetries() || !args.retryStatusCodes().contains( status ) )
+        {
+            return false;
+        }
+
+        long delay = args.respectRetryAfter() ? retryAfterMs( response ) : -1;
+        if ( delay > args.maxRetryAfterMs() )
+        {
+            LOGGER.debug( "Retry-After of {} ms is too long, no retry", delay );
+            return false;
+        }
+        delay = delay < 0 ? backoffMs( executionCount ) : delay;
+        if ( behindDeadline( context, delay ) || !acquire( context ) )
+        {
+            return false;
+        }
+
+        LOGGER.debug( "retry {} after status {} in {} ms", executionCount, status, delay );
+        nextInterval.set( delay );
+        return true;
+    }
+
+    // called by the same thread directly after retryRequest returns true
+    @Override
+    public long getRetryInterval()
+    {
+        return nextInterval.get();
+    }
+
+    public RetryBudget getBudget()
+    {
+        return budget;
+    }
+
+    public long getRetries()
+    {
+        return retries.sum();
+    }
+
+    public long getBudgetExhausted()
+    {
+        return budgetExhausted.sum();
+    }
+}
@@ -0,0 +1,42 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class contains the arguments of the {@link RetryPolicy} used by the {@link HttpClient}.
+ * <ul>
+ * <li>maxRetries: maximal number of retries of a single request</li>
+ * <li>requestSentRetryEnabled: retry also requests which are already sent completely after an I/O error</li>
+ * <li>retryStatusCodes: response status codes which are retried (default 429 and 503)</li>
+ * <li>baseDelayMs, maxDelayMs: exponential backoff with full jitter, the n-th retry waits a random time between 0
+ * and min(maxDelayMs, baseDelayMs * 2^(n-1))</li>
+ * <li>respectRetryAfter: use the Retry-After header of the response (seconds or http date) as delay</li>
+ * <li>maxRetryAfterMs: a longer Retry-After isn't waited for, the response is returned</li>
+ * <li>budgetRatio: every successful response (no server error and no retried status) adds this number of retry
+ * tokens to the budget of the host, every retry costs one token (0.2 means at most 20% additional load by
+ * retries)</li>
+ * <li>budgetMinTokens: tokens available at start, so a host with few requests can still be retried</li>
+ * <li>budgetMaxTokens: upper bound of the tokens per host</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class RetryPolicyArgs
+{
+    // @formatter:off
+    @Setter @Getter private int          maxRetries              = 4;
+    @Setter @Getter private boolean      requestSentRetryEnabled = true;
+    @Setter @Getter private Set<Integer> retryStatusCodes        = new TreeSet<>( Set.of( 429, 503 ) );
+    @Setter @Getter private long         baseDelayMs             = 100L;
+    @Setter @Getter private long         maxDelayMs              = 10000L;
+    @Setter @Getter private boolean      respectRetryAfter       = true;
+    @Setter @Getter private long         maxRetryAfterMs         = 30000L;
+    @Setter @Getter private double       budgetRatio             = 0.2;
+    @Setter @Getter private double       budgetMinTokens         = 10.0;
+    @Setter @Getter private double       budgetMaxTokens         = 100.0;
+    // @formatter:on
+}
@@ -0,0 +1,155 @@
+package me.steffen.http.fixture;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces identical concurrent requests: while a GET or HEAD request is running, every request with the same
+ * method, uri and auth headers (Authorization, Cookie and X-Vault-Token, see {@link EnumAuthType#identity}) waits for
+ * its result instead of sending an own request. Every waiting caller gets its own {@link ResponseData} copy of the
+ * result. Other headers of the requests aren't compared.
+ * <ul>
+ * <li>a waiting caller keeps its own deadline, it stops waiting if the deadline expires</li>
+ * <li>if the shared call was cancelled or missed its deadline the waiting callers execute their own request</li>
+ * <li>copies of the same request (i.e. hedged requests, sharing the {@link CancelHandle}) are never coalesced</li>
+ * </ul>
+ */
+public class SingleFlight
+{
+    private static final Set<String> METHODS = Set.of( "GET", "HEAD" );
+
+    private final Map<String, Call> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private static class Call
+    {
+        private final CompletableFuture<ResponseData> result = new CompletableFuture<>();
+        private final CancelHandle                    cancelHandle;
+
+        private Call( CancelHandle cancelHandle )
+        {
+            this.cancelHandle = cancelHandle;
+        }
+    }
+
+    /**
+     * @param request the request
+     * @return true if the request can share the result of another request
+     */
+    public static boolean isCoalescable( HttpRequest request )
+    {
+        return METHODS.contains( request.getMethod() ) && !request.isStreamResponse();
+    }
+
+    /**
+     * @param uriStr  the resolved uri
+     * @param request the request
+     * @return the key of identical requests
+     */
+    public static String key( String uriStr, HttpRequest request )
+    {
+        return request.getMethod() + " " + uriStr + "|" + EnumAuthType.identity( request );
+    }
+
+    /**
+     * @param key     the key of the request, see {@link #key(String, HttpRequest)}
+     * @param request the request
+     * @param call    executes the request
+     * @return the own or the shared response
+     */
+    public ResponseData execute( String key, HttpRequest request, Function<HttpRequest, ResponseData> call )
+    {
+        Call c       = new Call( request.getCancelHandle() );
+        Call running = calls.putIfAbsent( key, c );
+        if ( null == running || running.cancelHandle == request.getCancelHandle() )
+        {
+            return null == running ? lead( key, c, request, call ) : call.apply( request );
+        }
+
+        coalesced.increment();
+        try
+        {
+            ResponseData rd = 0 == request.getDeadline() ?
+                    running.result.get() :
+                    running.result.get( request.getRemainingMillis(), TimeUnit.MILLISECONDS );
+            if ( rd.isCancelled() || rd.isDeadlineExceeded() )
+            {
+                // the reason belongs to the shared call, not to this one
+                return call.apply( request );
+            }
+
+            return rd.copy();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            ResponseData rd = new ResponseData();
+            rd.setLastError( "waiting for the shared request interrupted" );
+            rd.setResponse( null );
+            return rd;
+        }
+        catch ( ExecutionException e )
+        {
+            return call.apply( request );
+        }
+        catch ( TimeoutException e )
+        {
+            ResponseData rd = new ResponseData();
+            rd.setDeadlineExceeded( true );
+            rd.setLastError( "deadline exceeded" );
+            rd.setResponse( null );
+            return rd;
+        }
+    }
+
+    private ResponseData lead( String key, Call c, HttpRequest request, Function<HttpRequest, ResponseData> call )
+    {
+        executed.increment();
+        try
+        {
+            ResponseData rd = call.apply( request );
+            calls.remove( key, c );
+            c.result.complete( rd );
+            return rd;
+        }
+        catch ( RuntimeException e )
+        {
+            calls.remove( key, c );
+            c.result.completeExceptionally( e );
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of requests executed by this instance
+     */
+    public long getExecuted()
+    {
+        return executed.sum();
+    }
+
+    /**
+     * @return the number of requests answered with the result of another request
+     */
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "SingleFlight{running=%d, executed=%d, coalesced=%d}", calls.size(), getExecuted(),
+                getCoalesced() );
+    }
+}
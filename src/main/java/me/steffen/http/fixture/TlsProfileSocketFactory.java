@@ -0,0 +1,54 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import java.util.Arrays;
+
+/**
+ * The socket factory restricts the protocols and cipher suites to the values of an {@link EnumTlsProfile} and
+ * announces the ALPN protocols of the profile during the handshake.
+ */
+public class TlsProfileSocketFactory
+        extends SSLConnectionSocketFactory
+{
+    private static final Logger LOGGER = LogManager.getLogger( TlsProfileSocketFactory.class );
+
+    @Getter private final EnumTlsProfile profile;
+
+    public TlsProfileSocketFactory( SSLContext sslContext, EnumTlsProfile profile, HostnameVerifier hostnameVerifier )
+    {
+        super( sslContext, profile.getProtocols( sslContext ), profile.getCipherSuites( sslContext ),
+                hostnameVerifier );
+        this.profile = profile;
+
+        String[] p = profile.getProtocols( sslContext );
+        String[] c = profile.getCipherSuites( sslContext );
+        if ( ( null != p && p.length == 0 ) || ( null != c && c.length == 0 ) )
+        {
+            LOGGER.error( "TLS profile {} isn't supported by this JVM, every handshake will fail", profile );
+        }
+        else
+        {
+            LOGGER.debug( "TLS profile {}: protocols {}, cipher suites {}", profile,
+                    null == p ? "<default>" : Arrays.toString( p ), null == c ? "<default>" : Arrays.toString( c ) );
+        }
+    }
+
+    @Override
+    protected void prepareSocket( SSLSocket socket )
+    {
+        if ( null != profile.getApplicationProtocols() )
+        {
+            SSLParameters sp = socket.getSSLParameters();
+            sp.setApplicationProtocols( profile.getApplicationProtocols() );
+            socket.setSSLParameters( sp );
+        }
+    }
+}
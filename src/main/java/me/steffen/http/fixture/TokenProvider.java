@@ -0,0 +1,214 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the authorization header of an {@link HttpAuth} entry valid. The token is fetched once at start and then
+ * renewed in the background before it expires, the new header value is published atomically. A request never waits
+ * for a token, a failed refresh keeps the current token and is retried after
+ * {@link TokenProviderArgs#getRetryDelayMs()}, doubled for every further failure in a row. Two refreshes are at least
+ * {@link TokenProviderArgs#getMinRefreshDelayMs()} apart, also for a token without lifetime.
+ */
+public abstract class TokenProvider
+{
+    private static final Logger LOGGER = LogManager.getLogger( TokenProvider.class );
+
+    protected static final ObjectMapper MAPPER = new ObjectMapper();
+
+    protected final HttpAuth auth;
+
+    protected final TokenProviderArgs args;
+
+    private final CloseableHttpClient client;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicReference<Token> current = new AtomicReference<>();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private volatile ScheduledFuture<?> next;
+
+    private volatile boolean stopped = false;
+
+    // failed refreshes in a row, only used by the refresh task
+    private int consecutiveFailures = 0;
+
+    /**
+     * a token as published to the requests
+     */
+    public static class Token
+    {
+        @Getter private final String value;
+
+        @Getter private final long expiresAt;
+
+        public Token( String value, long expiresAt )
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    protected TokenProvider( HttpAuth auth, TokenProviderArgs args, CloseableHttpClient client,
+            ScheduledExecutorService scheduler )
+    {
+        this.auth = auth;
+        this.args = args;
+        this.client = client;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the provider configured by the args
+     */
+    public static TokenProvider create( HttpAuth auth, TokenProviderArgs args, CloseableHttpClient client,
+            ScheduledExecutorService scheduler )
+    {
+        if ( args.getType() == EnumTokenProvider.VAULT_RENEW_SELF )
+        {
+            return new VaultTokenProvider( auth, args, client, scheduler );
+        }
+
+        return new OAuth2TokenProvider( auth, args, client, scheduler );
+    }
+
+    /**
+     * Request a new token from the endpoint.
+     *
+     * @param currentToken the current token value or null
+     * @return the new token (value without the auth type prefix) and its expiration time
+     * @throws IOException if the endpoint can't be reached or sends no token
+     */
+    protected abstract Token fetch( String currentToken ) throws IOException;
+
+    protected JsonNode executeJson( HttpUriRequest request ) throws IOException
+    {
+        try (CloseableHttpResponse response = client.execute( request ))
+        {
+            int    status = response.getStatusLine().getStatusCode();
+            String body   = null == response.getEntity() ? "" : EntityUtils.toString( response.getEntity() );
+            if ( status / 100 != 2 )
+            {
+                throw new IOException( "token endpoint '" + request.getURI() + "' returns status " + status );
+            }
+
+            return MAPPER.readTree( body );
+        }
+    }
+
+    /**
+     * fetch the first token synchronously and schedule the renewal
+     */
+    public void start()
+    {
+        refresh();
+    }
+
+    /**
+     * cancel the renewal, a running refresh doesn't schedule a next one
+     */
+    public void stop()
+    {
+        stopped = true;
+        ScheduledFuture<?> f = next;
+        if ( null != f )
+        {
+            f.cancel( false );
+        }
+    }
+
+    private void refresh()
+    {
+        if ( stopped )
+        {
+            return;
+        }
+
+        long  now   = System.currentTimeMillis();
+        Token token = current.get();
+        long  delay;
+        try
+        {
+            Token t        = fetch( null == token ? null : token.getValue() );
+            long  lifetime = t.getExpiresAt() - now;
+            current.set( t );
+            refreshes.increment();
+            consecutiveFailures = 0;
+            delay = Math.max( args.getMinRefreshDelayMs(), lifetime - Math.min( args.getRefreshAheadMs(),
+                    lifetime / 2 ) );
+            if ( lifetime < args.getMinRefreshDelayMs() )
+            {
+                LOGGER.warn( "token for '{}' is valid for {} ms only, it is refreshed in {} ms", auth.getAuthName(),
+                        lifetime, delay );
+            }
+            LOGGER.debug( "token for '{}' refreshed, valid for {} ms, next refresh in {} ms", auth.getAuthName(),
+                    lifetime, delay );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            failures.increment();
+            delay = Math.min( args.getMaxRetryDelayMs(),
+                    args.getRetryDelayMs() << Math.min( consecutiveFailures++, 20 ) );
+            delay = Math.max( args.getMinRefreshDelayMs(), delay );
+            LOGGER.error( "can't refresh token for '{}' (current token {}): {}", auth.getAuthName(), null == token ?
+                    "missing" :
+                    "expires in " + ( token.getExpiresAt() - now ) + " ms", e.getMessage() );
+        }
+
+        if ( !stopped && !scheduler.isShutdown() )
+        {
+            next = scheduler.schedule( this::refresh, delay, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * @return the complete header value for the current token or null if no token was fetched yet
+     */
+    public String getHttpAuthorization()
+    {
+        Token t = current.get();
+        if ( null == t )
+        {
+            return null;
+        }
+
+        String prefix = auth.getAuthType().getHttpAuth();
+        return prefix.isEmpty() ? t.getValue() : prefix + " " + t.getValue();
+    }
+
+    /**
+     * @return the current token or null
+     */
+    public Token getToken()
+    {
+        return current.get();
+    }
+
+    public long getRefreshes()
+    {
+        return refreshes.sum();
+    }
+
+    public long getFailures()
+    {
+        return failures.sum();
+    }
+}
@@ -0,0 +1,42 @@
+package me.steffen.http.fixture;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of a {@link TokenProvider}, part of an authorization entry in the {@link HttpClientConfig} file:
+ * <pre>
+ * "auths": { "api": { "type": "BEARER", "name": "client-id", "password": "secret",
+ *                     "tokenProvider": { "type": "OAUTH2_CLIENT_CREDENTIALS", "url": "https://idp/token" } } }
+ * </pre>
+ */
+public class TokenProviderArgs
+{
+    // @formatter:off
+    @Getter @Setter private EnumTokenProvider type = EnumTokenProvider.OAUTH2_CLIENT_CREDENTIALS;
+
+    /** the token endpoint, for Vault the complete renew-self url */
+    @Getter @Setter private String url;
+
+    /** OAuth2 scope, not sent if empty */
+    @Getter @Setter private String scope = "";
+
+    /** Vault lease increment (i.e. "1h"), not sent if empty */
+    @Getter @Setter private String increment = "";
+
+    /** refresh the token this time before it expires, at most the half of the token lifetime */
+    @Getter @Setter private long refreshAheadMs = 60000L;
+
+    /** token lifetime if the endpoint doesn't send one */
+    @Getter @Setter private long defaultTtlMs = 300000L;
+
+    /** delay before the next try after a failed refresh, doubled for every further failure in a row */
+    @Getter @Setter private long retryDelayMs = 5000L;
+
+    /** upper bound of the delay after failed refreshes */
+    @Getter @Setter private long maxRetryDelayMs = 300000L;
+
+    /** lower bound of the delay between two refreshes, i.e. for tokens without or with a very short lifetime */
+    @Getter @Setter private long minRefreshDelayMs = 5000L;
+    // @formatter:on
+}
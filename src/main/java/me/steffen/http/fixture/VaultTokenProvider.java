@@ -0,0 +1,53 @@
+package me.steffen.http.fixture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Renews the Vault token of the auth entry (the auth name) with <code>POST /v1/auth/token/renew-self</code>. Vault
+ * returns the same token with a new lease duration.
+ */
+public class VaultTokenProvider
+        extends TokenProvider
+{
+    private static final Logger LOGGER = LogManager.getLogger( VaultTokenProvider.class );
+
+    public VaultTokenProvider( HttpAuth auth, TokenProviderArgs args, CloseableHttpClient client,
+            ScheduledExecutorService scheduler )
+    {
+        super( auth, args, client, scheduler );
+    }
+
+    @Override
+    protected Token fetch( String currentToken ) throws IOException
+    {
+        String token = null == currentToken ? auth.getAuthName() : currentToken;
+
+        HttpPost post = new HttpPost( args.getUrl() );
+        post.setHeader( EnumAuthType.VAULT.getAuthHeaderField(), token );
+        if ( null != args.getIncrement() && !args.getIncrement().isEmpty() )
+        {
+            post.setEntity( new StringEntity( MAPPER
+                    .createObjectNode()
+                    .put( "increment", args.getIncrement() )
+                    .toString(), ContentType.APPLICATION_JSON ) );
+        }
+
+        JsonNode a = executeJson( post ).path( "auth" );
+        if ( !a.path( "renewable" ).asBoolean( true ) )
+        {
+            LOGGER.warn( "vault token of '{}' isn't renewable", auth.getAuthName() );
+        }
+
+        long ttl = a.has( "lease_duration" ) ? a.get( "lease_duration" ).asLong() * 1000 : args.getDefaultTtlMs();
+        return new Token( a.path( "client_token" ).asText( token ), System.currentTimeMillis() + ttl );
+    }
+}
@@ -0,0 +1,368 @@
+package me.steffen.http.security;
+
+import me.steffen.http.common.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * This trust manager remembers certificate chains which are positively validated by the wrapped (JSSE) trust manager.
+ * A new connection presenting the same chain skips the PKIX path building and the signature checks until the
+ * cache entry expires. The lifetime of an entry is the configured ttl but never longer than the validity of the
+ * chain certificates.
+ * <ul>
+ * <li>the cache key is the SHA-256 fingerprint of the complete chain together with the authentication type, the
+ * check direction and the peer host (if known)</li>
+ * <li>failed validations are never cached</li>
+ * <li>the observed trust material is checked every {@link #storeCheckIntervalMs} milliseconds, if the aliases or
+ * certificates changed the delegate is rebuild and all entries are evicted</li>
+ * </ul>
+ */
+public class CachingTrustManager
+        extends X509ExtendedTrustManager
+{
+    private static final Logger LOGGER = LogManager.getLogger( CachingTrustManager.class );
+
+    private static final long STORE_CHECK_INTERVAL_MS = 5000L;
+
+    private final Map<String, Long> validatedChains = new ConcurrentHashMap<>();
+
+    private final KeyStore trustMaterial;
+
+    private final long ttlMs;
+
+    private final int maxEntries;
+
+    private final long storeCheckIntervalMs;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile X509ExtendedTrustManager delegate;
+
+    private UnaryOperator<X509ExtendedTrustManager> delegateDecorator = UnaryOperator.identity();
+
+    private volatile int storeSignature;
+
+    private volatile long nextStoreCheck;
+
+    /**
+     * @param delegate      the trust manager which does the real validation
+     * @param trustMaterial the store the delegate is created from, used to detect changes (can be null)
+     * @param ttlMs         maximal lifetime of a cache entry
+     * @param maxEntries    maximal number of remembered chains
+     */
+    public CachingTrustManager( X509ExtendedTrustManager delegate, KeyStore trustMaterial, long ttlMs, int maxEntries )
+    {
+        this( delegate, trustMaterial, ttlMs, maxEntries, STORE_CHECK_INTERVAL_MS );
+    }
+
+    public CachingTrustManager( X509ExtendedTrustManager delegate, KeyStore trustMaterial, long ttlMs, int maxEntries,
+            long storeCheckIntervalMs )
+    {
+        this.delegate = delegate;
+        this.trustMaterial = trustMaterial;
+        this.ttlMs = ttlMs;
+        this.maxEntries = Math.max( 1, maxEntries );
+        this.storeCheckIntervalMs = storeCheckIntervalMs;
+        this.storeSignature = computeStoreSignature( trustMaterial );
+        this.nextStoreCheck = System.currentTimeMillis() + storeCheckIntervalMs;
+    }
+
+    /**
+     * If the delegate is a decorated trust manager (i.e. a {@link RevocationTrustManager}) the same decoration must be
+     * used if the delegate is rebuild after a change of the trust material.
+     *
+     * @param delegateDecorator applied to the new JSSE trust manager
+     * @return this
+     */
+    public CachingTrustManager setDelegateDecorator( UnaryOperator<X509ExtendedTrustManager> delegateDecorator )
+    {
+        this.delegateDecorator = delegateDecorator;
+        return this;
+    }
+
+    /**
+     * Creates the default JSSE trust manager for the given trust material.
+     *
+     * @param trustMaterial the keystore containing the trusted certificates
+     * @return the trust manager or null if it can't be created
+     */
+    public static X509ExtendedTrustManager createDefaultTrustManager( KeyStore trustMaterial )
+    {
+        try
+        {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance( TrustManagerFactory.getDefaultAlgorithm() );
+            tmf.init( trustMaterial );
+            for ( TrustManager tm : tmf.getTrustManagers() )
+            {
+                if ( tm instanceof X509ExtendedTrustManager )
+                {
+                    return (X509ExtendedTrustManager) tm;
+                }
+            }
+        }
+        catch ( NoSuchAlgorithmException | KeyStoreException e )
+        {
+            LOGGER.error( "createDefaultTrustManager: {}", e );
+        }
+
+        return null;
+    }
+
+    private static int computeStoreSignature( KeyStore store )
+    {
+        if ( null == store )
+        {
+            return 0;
+        }
+
+        int signature = 1;
+        try
+        {
+            for ( String alias : Collections.list( store.aliases() ) )
+            {
+                signature = 31 * signature + alias.hashCode();
+                signature = 31 * signature + ( store.isCertificateEntry( alias ) ?
+                        store.getCertificate( alias ).hashCode() :
+                        0 );
+            }
+            signature = 31 * signature + store.size();
+        }
+        catch ( KeyStoreException e )
+        {
+            LOGGER.error( e );
+        }
+
+        return signature;
+    }
+
+    private static String fingerprint( String direction, X509Certificate[] chain, String authType, String host )
+            throws CertificateException
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+            for ( X509Certificate c : chain )
+            {
+                md.update( c.getEncoded() );
+            }
+            return direction + "|" + authType + "|" + ( null == host ? "" : host ) + "|" + Function.hexify(
+                    md.digest() );
+        }
+        catch ( NoSuchAlgorithmException | CertificateEncodingException e )
+        {
+            throw new CertificateException( "can't compute chain fingerprint", e );
+        }
+    }
+
+    private static long chainNotAfter( X509Certificate[] chain )
+    {
+        long notAfter = Long.MAX_VALUE;
+        for ( X509Certificate c : chain )
+        {
+            notAfter = Math.min( notAfter, c.getNotAfter().getTime() );
+        }
+
+        return notAfter;
+    }
+
+    private void checkTrustMaterial( long now )
+    {
+        if ( null == trustMaterial || now < nextStoreCheck )
+        {
+            return;
+        }
+
+        synchronized ( this )
+        {
+            if ( now < nextStoreCheck )
+            {
+                return;
+            }
+            nextStoreCheck = now + storeCheckIntervalMs;
+
+            int signature = computeStoreSignature( trustMaterial );
+            if ( signature != storeSignature )
+            {
+                LOGGER.info( "trust material changed, evict {} validated chains", validatedChains.size() );
+                X509ExtendedTrustManager tm = createDefaultTrustManager( trustMaterial );
+                if ( null != tm )
+                {
+                    delegate = delegateDecorator.apply( tm );
+                }
+                storeSignature = signature;
+                invalidate();
+            }
+        }
+    }
+
+    private void remember( String key, X509Certificate[] chain, long now )
+    {
+        if ( validatedChains.size() >= maxEntries )
+        {
+            validatedChains.entrySet().removeIf( e -> e.getValue() <= now );
+            Iterator<String> it = validatedChains.keySet().iterator();
+            while ( validatedChains.size() >= maxEntries && it.hasNext() )
+            {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        validatedChains.put( key, Math.min( now + ttlMs, chainNotAfter( chain ) ) );
+    }
+
+    @FunctionalInterface
+    private interface Validation
+    {
+        void validate() throws CertificateException;
+    }
+
+    private void check( String direction, X509Certificate[] chain, String authType, String host,
+            Validation validation ) throws CertificateException
+    {
+        if ( null == chain || chain.length == 0 )
+        {
+            validation.validate();
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        checkTrustMaterial( now );
+
+        String key    = fingerprint( direction, chain, authType, host );
+        Long   expiry = validatedChains.get( key );
+        if ( null != expiry && expiry > now )
+        {
+            hits.increment();
+            return;
+        }
+
+        misses.increment();
+        if ( null != expiry )
+        {
+            validatedChains.remove( key, expiry );
+        }
+
+        validation.validate();
+        remember( key, chain, now );
+    }
+
+    private static String peerHost( Socket socket )
+    {
+        if ( null != socket && socket.getRemoteSocketAddress() instanceof InetSocketAddress )
+        {
+            return ( (InetSocketAddress) socket.getRemoteSocketAddress() ).getHostString();
+        }
+
+        return null;
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType ) throws CertificateException
+    {
+        check( "C", chain, authType, null, () -> delegate.checkClientTrusted( chain, authType ) );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType ) throws CertificateException
+    {
+        check( "S", chain, authType, null, () -> delegate.checkServerTrusted( chain, authType ) );
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType, Socket socket )
+            throws CertificateException
+    {
+        check( "C", chain, authType, peerHost( socket ), () -> delegate.checkClientTrusted( chain, authType, socket ) );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType, Socket socket )
+            throws CertificateException
+    {
+        check( "S", chain, authType, peerHost( socket ), () -> delegate.checkServerTrusted( chain, authType, socket ) );
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType, SSLEngine engine )
+            throws CertificateException
+    {
+        check( "C", chain, authType, null == engine ? null : engine.getPeerHost(),
+                () -> delegate.checkClientTrusted( chain, authType, engine ) );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType, SSLEngine engine )
+            throws CertificateException
+    {
+        check( "S", chain, authType, null == engine ? null : engine.getPeerHost(),
+                () -> delegate.checkServerTrusted( chain, authType, engine ) );
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers()
+    {
+        return delegate.getAcceptedIssuers();
+    }
+
+    /**
+     * remove all remembered chains, the next handshake for every peer does a complete validation
+     */
+    public void invalidate()
+    {
+        evictions.add( validatedChains.size() );
+        validatedChains.clear();
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    public int getSize()
+    {
+        return validatedChains.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "CachingTrustManager{size=%d, hits=%d, misses=%d, evictions=%d, ttlMs=%d}", getSize(),
+                getHits(), getMisses(), getEvictions(), ttlMs );
+    }
+}
@@ -0,0 +1,175 @@
+package me.steffen.http.security;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal DER support, enough to build an OCSP request and to find single values in OCSP responses and
+ * certificate extensions. The JDK offers no public API for this and we don't want an additional dependency.
+ */
+final class Der
+{
+    static final int INTEGER      = 0x02;
+    static final int OCTET_STRING = 0x04;
+    static final int NULL         = 0x05;
+    static final int OID          = 0x06;
+    static final int ENUMERATED   = 0x0A;
+    static final int SEQUENCE     = 0x30;
+    static final int CONTEXT_0    = 0xA0;
+    static final int CONTEXT_1    = 0xA1;
+    static final int CONTEXT_URI  = 0x86;
+
+    private Der()
+    {
+        // functional class
+    }
+
+    static byte[] encode( int tag, byte[]... contents )
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for ( byte[] c : contents )
+        {
+            content.write( c, 0, c.length );
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int                   len = content.size();
+        out.write( tag );
+        if ( len < 0x80 )
+        {
+            out.write( len );
+        }
+        else
+        {
+            int n = len > 0xFFFFFF ? 4 : len > 0xFFFF ? 3 : len > 0xFF ? 2 : 1;
+            out.write( 0x80 | n );
+            for ( int i = n - 1; i >= 0; --i )
+            {
+                out.write( ( len >> ( 8 * i ) ) & 0xFF );
+            }
+        }
+        out.write( content.toByteArray(), 0, len );
+
+        return out.toByteArray();
+    }
+
+    static Element parse( byte[] data )
+    {
+        return null == data || data.length < 2 ? null : parse( data, 0 );
+    }
+
+    private static Element parse( byte[] data, int offset )
+    {
+        int tag = data[offset] & 0xFF;
+        int len = data[offset + 1] & 0xFF;
+        int pos = offset + 2;
+        if ( len > 0x7F )
+        {
+            int n = len & 0x7F;
+            len = 0;
+            for ( int i = 0; i < n; ++i )
+            {
+                len = ( len << 8 ) | ( data[pos++] & 0xFF );
+            }
+        }
+
+        if ( pos + len > data.length )
+        {
+            throw new IllegalArgumentException( "DER element exceeds the available data" );
+        }
+
+        return new Element( tag, data, pos, len );
+    }
+
+    static final class Element
+    {
+        final int tag;
+
+        private final byte[] data;
+
+        private final int start;
+
+        private final int length;
+
+        private Element( int tag, byte[] data, int start, int length )
+        {
+            this.tag = tag;
+            this.data = data;
+            this.start = start;
+            this.length = length;
+        }
+
+        int end()
+        {
+            return start + length;
+        }
+
+        boolean isConstructed()
+        {
+            return ( tag & 0x20 ) != 0;
+        }
+
+        byte[] content()
+        {
+            return Arrays.copyOfRange( data, start, start + length );
+        }
+
+        String contentString()
+        {
+            return new String( data, start, length, StandardCharsets.US_ASCII );
+        }
+
+        List<Element> children()
+        {
+            List<Element> l   = new ArrayList<>();
+            int           pos = start;
+            while ( pos < start + length )
+            {
+                Element e = parse( data, pos );
+                l.add( e );
+                pos = e.end();
+            }
+
+            return l;
+        }
+
+        /**
+         * @return the content parsed as DER element (used for OCTET STRING wrapped structures)
+         */
+        Element unwrap()
+        {
+            return parse( content() );
+        }
+
+        Element child( int index )
+        {
+            List<Element> l = children();
+            return index < l.size() ? l.get( index ) : null;
+        }
+
+        /**
+         * @param wantedTag the tag to search for
+         * @return all elements with the tag in this subtree (depth first, constructed elements only are entered)
+         */
+        List<Element> findAll( int wantedTag )
+        {
+            List<Element> result = new ArrayList<>();
+            for ( Element c : children() )
+            {
+                if ( c.tag == wantedTag )
+                {
+                    result.add( c );
+                }
+                if ( c.isConstructed() )
+                {
+                    result.addAll( c.findAll( wantedTag ) );
+                }
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,807 @@
+package me.steffen.http.security;
+
+import me.steffen.http.common.Function;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This cache holds OCSP responses and CRLs for the {@link RevocationTrustManager}. Every entry is valid until the
+ * nextUpdate time of the response (or the defaultTtlMs if not set), optional the raw DER data is also written to a
+ * cache directory and used after a restart. A background task fetches entries again before they expire. A missing or
+ * expired entry is fetched by a shared task, the getters either return without it or wait for the task at most
+ * fetchTimeoutMs. An expired entry is kept as the last known status until a new one is fetched.
+ * <p>
+ * The entries are not verified here, this is done by the JDK {@link java.security.cert.PKIXRevocationChecker}
+ * during the path validation.
+ */
+public class RevocationCache
+        implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger( RevocationCache.class );
+
+    private static final String AIA_OID    = "1.3.6.1.5.5.7.1.1";
+    private static final String CRL_DP_OID = "2.5.29.31";
+
+    // 1.3.6.1.5.5.7.48.1 (id-ad-ocsp) and 1.3.14.3.2.26 (SHA-1)
+    private static final byte[] OCSP_ACCESS_METHOD = { 0x2B, 0x06, 0x01, 0x05, 0x05, 0x07, 0x30, 0x01 };
+    private static final byte[] SHA1_OID           = { 0x2B, 0x0E, 0x03, 0x02, 0x1A };
+
+    private static final String OCSP_PREFIX = "ocsp-";
+    private static final String CRL_PREFIX  = "crl-";
+
+    private final RevocationCheckerArgs args;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final CloseableHttpClient fetchClient;
+
+    private final ScheduledExecutorService refresher;
+
+    private final ExecutorService fetcher = Executors.newCachedThreadPool(
+            Function.daemonThreadFactory( "revocation-fetch" ) );
+
+    // keys with a running fetch, concurrent lookups share it
+    private final Map<String, Future<Entry>> pending = new ConcurrentHashMap<>();
+
+    // keys whose last fetch failed
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder fetches = new LongAdder();
+
+    private final LongAdder fetchMillis = new LongAdder();
+
+    private final LongAdder fetchFailures = new LongAdder();
+
+    private final LongAdder stapledResponses = new LongAdder();
+
+    private final LongAdder latencySavedMillis = new LongAdder();
+
+    private static class Entry
+    {
+        private final byte[]          encoded;
+        private final long            nextUpdate;
+        private final long            fetchMillis;
+        private final String          url;
+        private final X509Certificate cert;
+        private final X509Certificate issuer;
+        private final X509CRL         crl;
+
+        private Entry( byte[] encoded, long nextUpdate, long fetchMillis, String url, X509Certificate cert,
+                X509Certificate issuer, X509CRL crl )
+        {
+            this.encoded = encoded;
+            this.nextUpdate = nextUpdate;
+            this.fetchMillis = fetchMillis;
+            this.url = url;
+            this.cert = cert;
+            this.issuer = issuer;
+            this.crl = crl;
+        }
+    }
+
+    public RevocationCache( RevocationCheckerArgs args )
+    {
+        this.args = args;
+
+        RequestConfig rc = RequestConfig
+                .custom()
+                .setConnectTimeout( args.fetchTimeoutMs() )
+                .setSocketTimeout( args.fetchTimeoutMs() )
+                .setConnectionRequestTimeout( args.fetchTimeoutMs() )
+                .build();
+        fetchClient = HttpClients.custom().setDefaultRequestConfig( rc ).disableCookieManagement().build();
+
+        if ( !args.cacheDirectory().isEmpty() )
+        {
+            Function.createFolderStructure( args.cacheDirectory() );
+        }
+
+        if ( args.refreshIntervalMs() > 0 )
+        {
+            refresher = Executors.newSingleThreadScheduledExecutor(
+                    Function.daemonThreadFactory( "revocation-refresh" ) );
+            refresher.scheduleWithFixedDelay( this::refresh, args.refreshIntervalMs(), args.refreshIntervalMs(),
+                    TimeUnit.MILLISECONDS );
+        }
+        else
+        {
+            refresher = null;
+        }
+    }
+
+    private static String sha256( byte[]... parts )
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance( "SHA-256" );
+            for ( byte[] p : parts )
+            {
+                md.update( p );
+            }
+            return String.format( "%064x", new BigInteger( 1, md.digest() ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String ocspKey( X509Certificate cert )
+    {
+        return OCSP_PREFIX + sha256( cert.getIssuerX500Principal().getEncoded(),
+                cert.getSerialNumber().toByteArray() );
+    }
+
+    private static String crlKey( String url )
+    {
+        return CRL_PREFIX + sha256( url.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * @param cert the certificate
+     * @return the http urls of the OCSP responders from the authority information access extension
+     */
+    public static List<String> getOcspUrls( X509Certificate cert )
+    {
+        List<String> urls = new ArrayList<>();
+        byte[]       ext  = cert.getExtensionValue( AIA_OID );
+        if ( null != ext )
+        {
+            for ( Der.Element ad : Der.parse( ext ).unwrap().children() )
+            {
+                List<Der.Element> c = ad.children();
+                if ( c.size() == 2 && c.get( 0 ).tag == Der.OID && Arrays.equals( c.get( 0 ).content(),
+                        OCSP_ACCESS_METHOD ) && c.get( 1 ).tag == Der.CONTEXT_URI )
+                {
+                    urls.add( c.get( 1 ).contentString() );
+                }
+            }
+        }
+
+        return urls;
+    }
+
+    /**
+     * @param cert the certificate
+     * @return the http urls of the CRL distribution points
+     */
+    public static List<String> getCrlUrls( X509Certificate cert )
+    {
+        List<String> urls = new ArrayList<>();
+        byte[]       ext  = cert.getExtensionValue( CRL_DP_OID );
+        if ( null != ext )
+        {
+            Der.parse( ext )
+               .unwrap()
+               .findAll( Der.CONTEXT_URI )
+               .stream()
+               .map( Der.Element::contentString )
+               .filter( u -> u.startsWith( "http" ) )
+               .forEach( urls::add );
+        }
+
+        return urls;
+    }
+
+    /**
+     * Creates a DER encoded OCSP request (RFC 6960) for a single certificate without nonce, so the response can be
+     * cached and shared.
+     *
+     * @param cert   the certificate to check
+     * @param issuer the certificate of the issuer
+     * @return the encoded request
+     */
+    public static byte[] createOcspRequest( X509Certificate cert, X509Certificate issuer )
+    {
+        try
+        {
+            MessageDigest sha1     = MessageDigest.getInstance( "SHA-1" );
+            byte[]        nameHash = sha1.digest( cert.getIssuerX500Principal().getEncoded() );
+            byte[]        keyBits  = Der.parse( issuer.getPublicKey().getEncoded() ).child( 1 ).content();
+            byte[]        keyHash  = sha1.digest( Arrays.copyOfRange( keyBits, 1, keyBits.length ) );
+
+            byte[] certId = Der.encode( Der.SEQUENCE,
+                    Der.encode( Der.SEQUENCE, Der.encode( Der.OID, SHA1_OID ), Der.encode( Der.NULL ) ),
+                    Der.encode( Der.OCTET_STRING, nameHash ), Der.encode( Der.OCTET_STRING, keyHash ),
+                    Der.encode( Der.INTEGER, cert.getSerialNumber().toByteArray() ) );
+
+            // OCSPRequest -> TBSRequest -> requestList -> Request -> CertID
+            return Der.encode( Der.SEQUENCE,
+                    Der.encode( Der.SEQUENCE, Der.encode( Der.SEQUENCE, Der.encode( Der.SEQUENCE, certId ) ) ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    // the first SingleResponse of a successful OCSP response
+    private static Der.Element firstSingleResponse( byte[] response )
+    {
+        Der.Element resp   = Der.parse( response );
+        Der.Element status = null == resp ? null : resp.child( 0 );
+        if ( null == status || status.tag != Der.ENUMERATED || status.content()[0] != 0 )
+        {
+            throw new IllegalArgumentException( "OCSP response status isn't successful" );
+        }
+
+        // [0] ResponseBytes -> BasicOCSPResponse -> tbsResponseData -> responses
+        Der.Element basic = resp.child( 1 ).child( 0 ).child( 1 ).unwrap();
+        Der.Element tbs   = basic.child( 0 );
+        for ( Der.Element c : tbs.children() )
+        {
+            if ( c.tag == Der.SEQUENCE )
+            {
+                return c.child( 0 );
+            }
+        }
+
+        throw new IllegalArgumentException( "OCSP response contains no single response" );
+    }
+
+    /**
+     * @param response DER encoded OCSP response
+     * @return the nextUpdate of the first single response or -1 if not set
+     * @throws IllegalArgumentException if the response status isn't successful or the data can't be parsed
+     */
+    public static long getOcspNextUpdate( byte[] response )
+    {
+        for ( Der.Element f : firstSingleResponse( response ).children() )
+        {
+            if ( f.tag == Der.CONTEXT_0 )
+            {
+                return parseGeneralizedTime( f.child( 0 ).contentString() );
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param response DER encoded OCSP response
+     * @return true if the certStatus of the first single response is revoked
+     * @throws IllegalArgumentException if the response status isn't successful or the data can't be parsed
+     */
+    public static boolean isOcspRevoked( byte[] response )
+    {
+        // certStatus: [0] good, [1] revoked (constructed RevokedInfo), [2] unknown
+        return firstSingleResponse( response ).child( 1 ).tag == Der.CONTEXT_1;
+    }
+
+    private static long parseGeneralizedTime( String time )
+    {
+        String t = time.replaceAll( "\\.\\d+", "" ).replace( "Z", "" );
+        return LocalDateTime
+                .parse( t, DateTimeFormatter.ofPattern( "yyyyMMddHHmmss" ) )
+                .toInstant( ZoneOffset.UTC )
+                .toEpochMilli();
+    }
+
+    private long nextUpdateOrDefault( long nextUpdate, long now )
+    {
+        return nextUpdate > 0 ? nextUpdate : now + args.defaultTtlMs();
+    }
+
+    public byte[] getOcspResponse( X509Certificate cert, X509Certificate issuer )
+    {
+        return getOcspResponse( cert, issuer, null, false );
+    }
+
+    /**
+     * @param cert   the certificate to check
+     * @param issuer the certificate of the issuer
+     * @param saved  the fetch time of a cached response is added, may be null
+     * @param wait   wait at most fetchTimeoutMs for the fetch of a missing response
+     * @return a not expired OCSP response or null if it isn't cached (or fetched in time), then it is fetched in the
+     * background
+     */
+    public byte[] getOcspResponse( X509Certificate cert, X509Certificate issuer, AtomicLong saved, boolean wait )
+    {
+        String key = ocspKey( cert );
+        Entry  e   = lookup( key, saved );
+        if ( null == e )
+        {
+            e = await( fetchAsync( key, () -> fetchOcsp( key, cert, issuer ) ), wait );
+            return null == e ? null : e.encoded;
+        }
+        if ( null == e.cert )
+        {
+            // read from the cache file, the certificates are needed for the refresh
+            e = new Entry( e.encoded, e.nextUpdate, e.fetchMillis, e.url, cert, issuer, null );
+            entries.put( key, e );
+        }
+
+        return e.encoded;
+    }
+
+    /**
+     * Stores an OCSP response stapled by the server, the response is used like a fetched one.
+     *
+     * @param cert     the server certificate
+     * @param issuer   the certificate of the issuer
+     * @param response the DER encoded response
+     * @return the saved fetch time (the average fetch time) or 0 if the response is invalid
+     */
+    public long putStapledResponse( X509Certificate cert, X509Certificate issuer, byte[] response )
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            Entry e = new Entry( response, nextUpdateOrDefault( getOcspNextUpdate( response ), now ),
+                    getAverageFetchMillis(), "", cert, issuer, null );
+            store( ocspKey( cert ), e );
+            stapledResponses.increment();
+            latencySavedMillis.add( e.fetchMillis );
+            return e.fetchMillis;
+        }
+        catch ( RuntimeException ex )
+        {
+            LOGGER.warn( "ignore invalid stapled OCSP response for {}: {}", cert.getSubjectX500Principal(),
+                    ex.getMessage() );
+            return 0;
+        }
+    }
+
+    public List<X509CRL> getCrls( X509Certificate cert )
+    {
+        return getCrls( cert, null, false );
+    }
+
+    /**
+     * @param cert  the certificate to check
+     * @param saved the fetch time of the cached CRLs is added, may be null
+     * @param wait  wait at most fetchTimeoutMs for the fetch of each missing CRL
+     * @return all cached not expired CRLs from the distribution points of the certificate, the missing ones are
+     * fetched in the background
+     */
+    public List<X509CRL> getCrls( X509Certificate cert, AtomicLong saved, boolean wait )
+    {
+        List<X509CRL> crls = new ArrayList<>();
+        for ( String url : getCrlUrls( cert ) )
+        {
+            String key = crlKey( url );
+            Entry  e   = lookup( key, saved );
+            if ( null == e )
+            {
+                e = await( fetchAsync( key, () -> fetchCrl( key, url ) ), wait );
+                if ( null != e )
+                {
+                    crls.add( e.crl );
+                }
+                continue;
+            }
+            if ( e.url.isEmpty() )
+            {
+                // read from the cache file, the url is needed for the refresh
+                e = new Entry( e.encoded, e.nextUpdate, e.fetchMillis, url, null, null, e.crl );
+                entries.put( key, e );
+            }
+            crls.add( e.crl );
+        }
+
+        return crls;
+    }
+
+    /**
+     * @param cert the certificate
+     * @return true if the last known OCSP response or CRL of the certificate, even an expired one, revokes it
+     */
+    public boolean isRevoked( X509Certificate cert )
+    {
+        Entry o = entries.get( ocspKey( cert ) );
+        if ( null != o && isOcspRevoked( o.encoded ) )
+        {
+            return true;
+        }
+
+        return getCrlUrls( cert )
+                .stream()
+                .map( u -> entries.get( crlKey( u ) ) )
+                .anyMatch( c -> null != c && c.crl.isRevoked( cert ) );
+    }
+
+    /**
+     * @param cert the certificate
+     * @return true if the last fetch of the OCSP response or a CRL of the certificate failed
+     */
+    public boolean isFetchFailed( X509Certificate cert )
+    {
+        List<String> keys = new ArrayList<>();
+        keys.add( ocspKey( cert ) );
+        getCrlUrls( cert ).forEach( u -> keys.add( crlKey( u ) ) );
+        return keys.stream().anyMatch( failed::contains );
+    }
+
+    // starts the fetch or returns the running one, null if the cache is closed
+    private Future<Entry> fetchAsync( String key, Supplier<Entry> fetch )
+    {
+        FutureTask<Entry> task    = new FutureTask<>( fetch::get );
+        Future<Entry>     running = pending.putIfAbsent( key, task );
+        if ( null != running )
+        {
+            return running;
+        }
+
+        try
+        {
+            fetcher.execute( () -> {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    pending.remove( key, task );
+                }
+            } );
+            return task;
+        }
+        catch ( RejectedExecutionException e )
+        {
+            pending.remove( key, task );
+            return null;
+        }
+    }
+
+    private Entry await( Future<Entry> fetch, boolean wait )
+    {
+        if ( !wait || null == fetch )
+        {
+            return null;
+        }
+
+        try
+        {
+            return fetch.get( args.fetchTimeoutMs(), TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( ExecutionException | TimeoutException e )
+        {
+            LOGGER.warn( "revocation fetch isn't done within {} ms: {}", args.fetchTimeoutMs(), e.getMessage() );
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if no fetch is running
+     */
+    public boolean isIdle()
+    {
+        return pending.isEmpty();
+    }
+
+    private Entry lookup( String key, AtomicLong saved )
+    {
+        long  now = System.currentTimeMillis();
+        Entry e   = entries.get( key );
+        if ( null == e )
+        {
+            e = readCacheFile( key, now );
+        }
+
+        if ( null != e && e.nextUpdate > now )
+        {
+            hits.increment();
+            latencySavedMillis.add( e.fetchMillis );
+            if ( null != saved )
+            {
+                saved.addAndGet( e.fetchMillis );
+            }
+            return e;
+        }
+
+        return null;
+    }
+
+    private Entry fetchOcsp( String key, X509Certificate cert, X509Certificate issuer )
+    {
+        List<String> urls = args.ocspResponderUrl().isEmpty() ?
+                getOcspUrls( cert ) :
+                List.of( args.ocspResponderUrl() );
+
+        for ( String url : urls )
+        {
+            HttpPost post = new HttpPost( url );
+            post.setEntity( new ByteArrayEntity( createOcspRequest( cert, issuer ),
+                    ContentType.create( "application/ocsp-request" ) ) );
+
+            long   t        = System.currentTimeMillis();
+            byte[] response = fetch( post );
+            if ( null != response )
+            {
+                try
+                {
+                    long  now = System.currentTimeMillis();
+                    Entry e = new Entry( response, nextUpdateOrDefault( getOcspNextUpdate( response ), now ), now - t,
+                            url, cert, issuer, null );
+                    store( key, e );
+                    failed.remove( key );
+                    return e;
+                }
+                catch ( RuntimeException ex )
+                {
+                    fetchFailures.increment();
+                    LOGGER.warn( "invalid OCSP response from {}: {}", url, ex.getMessage() );
+                }
+            }
+        }
+
+        failed.add( key );
+        return null;
+    }
+
+    private Entry fetchCrl( String key, String url )
+    {
+        long   t    = System.currentTimeMillis();
+        byte[] data = fetch( new HttpGet( url ) );
+        if ( null != data )
+        {
+            try
+            {
+                X509CRL crl = createCrl( data );
+                long    now = System.currentTimeMillis();
+                Entry e = new Entry( data, nextUpdateOrDefault(
+                        null == crl.getNextUpdate() ? -1 : crl.getNextUpdate().getTime(), now ), now - t, url, null,
+                        null, crl );
+                store( key, e );
+                failed.remove( key );
+                return e;
+            }
+            catch ( CertificateException | CRLException ex )
+            {
+                fetchFailures.increment();
+                LOGGER.warn( "invalid CRL from {}: {}", url, ex.getMessage() );
+            }
+        }
+
+        failed.add( key );
+        return null;
+    }
+
+    private static X509CRL createCrl( byte[] data ) throws CertificateException, CRLException
+    {
+        return (X509CRL) CertificateFactory.getInstance( "X.509" ).generateCRL( new ByteArrayInputStream( data ) );
+    }
+
+    private byte[] fetch( HttpRequestBase request )
+    {
+        fetches.increment();
+        long t = System.currentTimeMillis();
+        try (CloseableHttpResponse r = fetchClient.execute( request ))
+        {
+            int status = r.getStatusLine().getStatusCode();
+            if ( status == 200 && null != r.getEntity() )
+            {
+                return EntityUtils.toByteArray( r.getEntity() );
+            }
+            LOGGER.warn( "revocation fetch {} {} returns status {}", request.getMethod(), request.getURI(), status );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( "revocation fetch {} {} failed: {}", request.getMethod(), request.getURI(), e.getMessage() );
+        }
+        finally
+        {
+            fetchMillis.add( System.currentTimeMillis() - t );
+        }
+
+        fetchFailures.increment();
+        return null;
+    }
+
+    private void store( String key, Entry e )
+    {
+        entries.put( key, e );
+
+        if ( !args.cacheDirectory().isEmpty() )
+        {
+            Path file = Paths.get( args.cacheDirectory(), key + ".der" );
+            Path tmp  = Paths.get( args.cacheDirectory(), key + ".tmp" );
+            try
+            {
+                Files.write( tmp, e.encoded );
+                Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( IOException ex )
+            {
+                LOGGER.warn( "can't write revocation cache file {}: {}", file, ex.getMessage() );
+            }
+        }
+    }
+
+    private Entry readCacheFile( String key, long now )
+    {
+        if ( args.cacheDirectory().isEmpty() )
+        {
+            return null;
+        }
+
+        Path file = Paths.get( args.cacheDirectory(), key + ".der" );
+        if ( !Files.isRegularFile( file ) )
+        {
+            return null;
+        }
+
+        try
+        {
+            byte[] data = Files.readAllBytes( file );
+            Entry  e;
+            if ( key.startsWith( CRL_PREFIX ) )
+            {
+                X509CRL crl = createCrl( data );
+                e = new Entry( data, nextUpdateOrDefault(
+                        null == crl.getNextUpdate() ? -1 : crl.getNextUpdate().getTime(), now ),
+                        getAverageFetchMillis(), "", null, null, crl );
+            }
+            else
+            {
+                e = new Entry( data, nextUpdateOrDefault( getOcspNextUpdate( data ), now ), getAverageFetchMillis(),
+                        "", null, null, null );
+            }
+
+            // an expired entry is kept as the last known status
+            entries.put( key, e );
+            return e;
+        }
+        catch ( IOException | CertificateException | CRLException | RuntimeException ex )
+        {
+            LOGGER.warn( "ignore revocation cache file {}: {}", file, ex.getMessage() );
+        }
+
+        return null;
+    }
+
+    /**
+     * Fetches all entries again which expire within the refreshAheadMs, an expired entry which can't be fetched is
+     * kept as the last known status and fetched again with the next refresh.
+     */
+    public void refresh()
+    {
+        long now = System.currentTimeMillis();
+        for ( Map.Entry<String, Entry> me : entries.entrySet() )
+        {
+            Entry e = me.getValue();
+            if ( e.nextUpdate - now > args.refreshAheadMs() )
+            {
+                continue;
+            }
+
+            if ( null != e.crl && !e.url.isEmpty() )
+            {
+                fetchCrl( me.getKey(), e.url );
+            }
+            else if ( null != e.cert && null != e.issuer )
+            {
+                fetchOcsp( me.getKey(), e.cert, e.issuer );
+            }
+        }
+    }
+
+    public void clear()
+    {
+        entries.clear();
+        failed.clear();
+    }
+
+    public int getSize()
+    {
+        return entries.size();
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getFetches()
+    {
+        return fetches.sum();
+    }
+
+    public long getFetchFailures()
+    {
+        return fetchFailures.sum();
+    }
+
+    public long getStapledResponses()
+    {
+        return stapledResponses.sum();
+    }
+
+    public long getAverageFetchMillis()
+    {
+        long f = fetches.sum();
+        return f == 0 ? 0 : fetchMillis.sum() / f;
+    }
+
+    /**
+     * @return the sum of the fetch times of all responses which were taken from the cache or stapled by the server
+     * instead of fetching them during a handshake
+     */
+    public long getLatencySavedMillis()
+    {
+        return latencySavedMillis.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        if ( null != refresher )
+        {
+            refresher.shutdownNow();
+        }
+        fetcher.shutdownNow();
+
+        try
+        {
+            fetchClient.close();
+        }
+        catch ( IOException e )
+        {
+            LOGGER.warn( e );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "RevocationCache{size=%d, hits=%d, stapled=%d, fetches=%d, failures=%d, avgFetchMs=%d, savedMs=%d}",
+                getSize(), getHits(), getStapledResponses(), getFetches(), getFetchFailures(),
+                getAverageFetchMillis(), getLatencySavedMillis() );
+    }
+}
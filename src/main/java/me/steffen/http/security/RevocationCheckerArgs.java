@@ -0,0 +1,42 @@
+package me.steffen.http.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * This class contains the arguments for the revocation checking of server certificates
+ * (see {@link RevocationTrustManager}). OCSP responses and CRLs are cached in memory and optional on disk until their
+ * nextUpdate time and fetched again in the background before they expire.
+ * <ul>
+ * <li>cacheDirectory: folder for the disk cache, empty disables the disk cache</li>
+ * <li>preferStapled: use an OCSP response stapled by the server (status_request extension) before fetching one</li>
+ * <li>preferCrls: use CRLs first, OCSP only if no CRL distribution point exists</li>
+ * <li>onlyEndEntity: check the server certificate only, not the intermediate CA certificates</li>
+ * <li>softFail: accept a certificate without cached revocation information and fetch it in the background, without
+ * softFail the handshake waits up to fetchTimeoutMs for the fetch and rejects the certificate if it fails (a revoked
+ * status, even an expired one, is always rejected)</li>
+ * <li>ocspResponderUrl: overrides the responder from the certificate AIA extension, i.e. for a local responder</li>
+ * <li>defaultTtlMs: lifetime of a response without nextUpdate</li>
+ * <li>refreshAheadMs: entries are fetched again in the background if they expire within this time</li>
+ * <li>refreshIntervalMs: interval of the background refresh</li>
+ * <li>fetchTimeoutMs: connect and read timeout for the responder and CRL requests, also the maximum wait of a
+ * handshake for a missing entry</li>
+ * </ul>
+ */
+@Accessors( fluent = true )
+public class RevocationCheckerArgs
+{
+    // @formatter:off
+    @Setter @Getter private String  cacheDirectory    = "";
+    @Setter @Getter private boolean preferStapled     = true;
+    @Setter @Getter private boolean preferCrls        = false;
+    @Setter @Getter private boolean onlyEndEntity     = true;
+    @Setter @Getter private boolean softFail          = false;
+    @Setter @Getter private String  ocspResponderUrl  = "";
+    @Setter @Getter private long    defaultTtlMs      = 3600000L;
+    @Setter @Getter private long    refreshAheadMs    = 300000L;
+    @Setter @Getter private long    refreshIntervalMs = 60000L;
+    @Setter @Getter private int     fetchTimeoutMs    = 5000;
+    // @formatter:on
+}
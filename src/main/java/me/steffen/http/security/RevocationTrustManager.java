@@ -0,0 +1,342 @@
+package me.steffen.http.security;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXParameters;
+import java.security.cert.PKIXRevocationChecker;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * This trust manager checks the revocation status of the server certificates after the wrapped trust manager has
+ * validated the chain. The OCSP responses and CRLs are taken from the {@link RevocationCache} (a stapled response
+ * is preferred if the server sends one) and handed to the JDK {@link PKIXRevocationChecker}, which verifies them
+ * without any additional network access (NO_FALLBACK, every certificate is checked with the one method it has data
+ * for).
+ * <p>
+ * A certificate whose last known status (even an expired one) is revoked is always rejected. If the revocation
+ * information isn't cached or is expired, the handshake waits at most fetchTimeoutMs for the fetch and rejects the
+ * certificate if nothing is fetched. Only with softFail the certificate is accepted with a warning instead while the
+ * cache fetches the information in the background.
+ * <p>
+ * Stapled responses are only sent if the client requests them, this is done by the system property
+ * <code>jdk.tls.client.enableStatusRequestExtension=true</code> which must be set before the first TLS handshake.
+ */
+public class RevocationTrustManager
+        extends X509ExtendedTrustManager
+{
+    private static final Logger LOGGER = LogManager.getLogger( RevocationTrustManager.class );
+
+    private final X509ExtendedTrustManager delegate;
+
+    private final KeyStore trustMaterial;
+
+    private final RevocationCache cache;
+
+    private final RevocationCheckerArgs args;
+
+    private final LongAdder checkedChains = new LongAdder();
+
+    private final LongAdder checkMillis = new LongAdder();
+
+    public RevocationTrustManager( X509ExtendedTrustManager delegate, KeyStore trustMaterial, RevocationCache cache,
+            RevocationCheckerArgs args )
+    {
+        this.delegate = delegate;
+        this.trustMaterial = trustMaterial;
+        this.cache = cache;
+        this.args = args;
+    }
+
+    /**
+     * ask the server for a stapled OCSP response during the handshake, must be called before the first handshake
+     */
+    public static void enableStatusRequest()
+    {
+        System.setProperty( "jdk.tls.client.enableStatusRequestExtension", "true" );
+    }
+
+    private static List<byte[]> stapledResponses( SSLSession session )
+    {
+        if ( session instanceof ExtendedSSLSession )
+        {
+            return ( (ExtendedSSLSession) session ).getStatusResponses();
+        }
+
+        return Collections.emptyList();
+    }
+
+    private static List<byte[]> stapledResponses( Socket socket )
+    {
+        return socket instanceof SSLSocket ?
+                stapledResponses( ( (SSLSocket) socket ).getHandshakeSession() ) :
+                Collections.emptyList();
+    }
+
+    private static X509Certificate findIssuer( X509Certificate[] chain, int index, Set<X509Certificate> anchors )
+    {
+        if ( index + 1 < chain.length )
+        {
+            return chain[index + 1];
+        }
+
+        X509Certificate cert = chain[index];
+        return anchors
+                .stream()
+                .filter( a -> a.getSubjectX500Principal().equals( cert.getIssuerX500Principal() ) )
+                .findFirst()
+                .orElse( null );
+    }
+
+    private void checkRevocation( X509Certificate[] chain, List<byte[]> stapled ) throws CertificateException
+    {
+        if ( null == chain || chain.length == 0 )
+        {
+            return;
+        }
+
+        long       t     = System.currentTimeMillis();
+        AtomicLong saved = new AtomicLong();
+        try
+        {
+            PKIXParameters params = new PKIXParameters( trustMaterial );
+            params.setRevocationEnabled( true );
+            Set<X509Certificate> anchors = params
+                    .getTrustAnchors()
+                    .stream()
+                    .map( TrustAnchor::getTrustedCert )
+                    .collect( Collectors.toSet() );
+
+            // the path for the validator must not contain the trust anchor
+            List<X509Certificate> path = new ArrayList<>();
+            for ( X509Certificate c : chain )
+            {
+                if ( anchors.contains( c ) )
+                {
+                    break;
+                }
+                path.add( c );
+            }
+
+            int count = args.onlyEndEntity() ? Math.min( 1, path.size() ) : path.size();
+            for ( int i = 0; i < count; ++i )
+            {
+                Map<X509Certificate, byte[]> responses = new HashMap<>();
+                List<X509CRL>                crls      = new ArrayList<>();
+                List<byte[]>                 s         = i == 0 ? stapled : null;
+                if ( collectRevocationInfo( chain, i, anchors, s, responses, crls, saved, false ) )
+                {
+                    validate( path.subList( i, path.size() ), (PKIXParameters) params.clone(), responses, crls );
+                }
+                else if ( cache.isRevoked( chain[i] ) )
+                {
+                    throw new CertificateException(
+                            "certificate " + chain[i].getSubjectX500Principal() + " is revoked (last known status)" );
+                }
+                else if ( args.softFail() )
+                {
+                    LOGGER.warn( "no revocation information for '{}' (soft fail, fetched in the background)",
+                            chain[i].getSubjectX500Principal() );
+                }
+                else if ( collectRevocationInfo( chain, i, anchors, s, responses, crls, saved, true ) )
+                {
+                    validate( path.subList( i, path.size() ), (PKIXParameters) params.clone(), responses, crls );
+                }
+                else
+                {
+                    throw new CertificateException(
+                            "no revocation information for " + chain[i].getSubjectX500Principal() );
+                }
+            }
+        }
+        catch ( CertPathValidatorException e )
+        {
+            throw new CertificateException( "revocation check failed: " + e.getMessage(), e );
+        }
+        catch ( GeneralSecurityException e )
+        {
+            throw new CertificateException( "can't check revocation status: " + e.getMessage(), e );
+        }
+        finally
+        {
+            long d = System.currentTimeMillis() - t;
+            checkedChains.increment();
+            checkMillis.add( d );
+            LOGGER.debug( "revocation check for '{}' takes {} ms, saved {} ms using cached/stapled responses",
+                    chain[0].getSubjectX500Principal(), d, saved.get() );
+        }
+    }
+
+    // checks the first certificate of the path with either the OCSP response or the CRLs, never goes online
+    private void validate( List<X509Certificate> path, PKIXParameters params, Map<X509Certificate, byte[]> responses,
+            List<X509CRL> crls ) throws GeneralSecurityException
+    {
+        CertPathValidator     cpv = CertPathValidator.getInstance( "PKIX" );
+        PKIXRevocationChecker rc  = (PKIXRevocationChecker) cpv.getRevocationChecker();
+        rc.setOcspResponses( responses );
+
+        EnumSet<PKIXRevocationChecker.Option> options = EnumSet.of( PKIXRevocationChecker.Option.NO_FALLBACK,
+                PKIXRevocationChecker.Option.ONLY_END_ENTITY );
+        if ( !crls.isEmpty() )
+        {
+            options.add( PKIXRevocationChecker.Option.PREFER_CRLS );
+            params.addCertStore( CertStore.getInstance( "Collection", new CollectionCertStoreParameters( crls ) ) );
+        }
+        if ( args.softFail() )
+        {
+            options.add( PKIXRevocationChecker.Option.SOFT_FAIL );
+        }
+        rc.setOptions( options );
+        params.addCertPathChecker( rc );
+
+        cpv.validate( CertificateFactory.getInstance( "X.509" ).generateCertPath( path ), params );
+    }
+
+    // either responses or crls is filled, with wait a missing entry is fetched within the fetchTimeoutMs
+    private boolean collectRevocationInfo( X509Certificate[] chain, int index, Set<X509Certificate> anchors,
+            List<byte[]> stapled, Map<X509Certificate, byte[]> responses, List<X509CRL> crls, AtomicLong saved,
+            boolean wait )
+    {
+        X509Certificate cert   = chain[index];
+        X509Certificate issuer = findIssuer( chain, index, anchors );
+        if ( null == issuer )
+        {
+            return false;
+        }
+
+        if ( args.preferStapled() && null != stapled && !stapled.isEmpty() && stapled.get( 0 ).length > 0 )
+        {
+            responses.put( cert, stapled.get( 0 ) );
+            saved.addAndGet( cache.putStapledResponse( cert, issuer, stapled.get( 0 ) ) );
+            return true;
+        }
+
+        if ( args.preferCrls() )
+        {
+            List<X509CRL> c = cache.getCrls( cert, saved, wait );
+            if ( !c.isEmpty() )
+            {
+                crls.addAll( c );
+                return true;
+            }
+        }
+
+        byte[] r = cache.getOcspResponse( cert, issuer, saved, wait );
+        if ( null != r )
+        {
+            responses.put( cert, r );
+            return true;
+        }
+
+        if ( !args.preferCrls() )
+        {
+            List<X509CRL> c = cache.getCrls( cert, saved, wait );
+            crls.addAll( c );
+            return !c.isEmpty();
+        }
+
+        return false;
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType ) throws CertificateException
+    {
+        delegate.checkClientTrusted( chain, authType );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType ) throws CertificateException
+    {
+        delegate.checkServerTrusted( chain, authType );
+        checkRevocation( chain, Collections.emptyList() );
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType, Socket socket )
+            throws CertificateException
+    {
+        delegate.checkClientTrusted( chain, authType, socket );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType, Socket socket )
+            throws CertificateException
+    {
+        delegate.checkServerTrusted( chain, authType, socket );
+        checkRevocation( chain, stapledResponses( socket ) );
+    }
+
+    @Override
+    public void checkClientTrusted( X509Certificate[] chain, String authType, SSLEngine engine )
+            throws CertificateException
+    {
+        delegate.checkClientTrusted( chain, authType, engine );
+    }
+
+    @Override
+    public void checkServerTrusted( X509Certificate[] chain, String authType, SSLEngine engine )
+            throws CertificateException
+    {
+        delegate.checkServerTrusted( chain, authType, engine );
+        checkRevocation( chain, null == engine ?
+                Collections.emptyList() :
+                stapledResponses( engine.getHandshakeSession() ) );
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers()
+    {
+        return delegate.getAcceptedIssuers();
+    }
+
+    public RevocationCache getCache()
+    {
+        return cache;
+    }
+
+    public long getCheckedChains()
+    {
+        return checkedChains.sum();
+    }
+
+    public long getAverageCheckMillis()
+    {
+        long c = checkedChains.sum();
+        return c == 0 ? 0 : checkMillis.sum() / c;
+    }
+
+    /**
+     * @return the average time per checked chain which was saved by cached or stapled responses
+     */
+    public long getAverageLatencySavedMillis()
+    {
+        long c = checkedChains.sum();
+        return c == 0 ? 0 : cache.getLatencySavedMillis() / c;
+    }
+}
@@ -7,7 +7,10 @@ import org.apache.http.ssl.SSLContexts;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
 import java.io.ByteArrayInputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
@@ -21,6 +24,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.SecureRandom;
 import java.security.SignatureException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
@@ -39,6 +43,8 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 public class SecurityHelper
 {
@@ -130,6 +136,23 @@ public class SecurityHelper
      */
     public static SSLContext getSslContext( JksManager jksManager, boolean keyStoreContainsTrustMaterial,
             PrivateKeyStrategy privateKeyStrategy )
+    {
+        return getSslContext( jksManager, keyStoreContainsTrustMaterial, privateKeyStrategy, null );
+    }
+
+    /**
+     * configure SSL context like {@link #getSslContext(JksManager, boolean, PrivateKeyStrategy)} but every X509 trust
+     * manager created from the trust material is replaced by the result of the decorator, i.e. a
+     * {@link CachingTrustManager}
+     *
+     * @param jksManager                    the Java Keystore Manager(JKS) containing the used key- and truststore
+     * @param keyStoreContainsTrustMaterial SSL context uses the information from the keystore as trust material
+     * @param privateKeyStrategy            used for finding alias for client side identification
+     * @param trustManagerDecorator         wraps the JSSE trust managers, null uses them unchanged
+     * @return SSLContent the created SSLContent object
+     */
+    public static SSLContext getSslContext( JksManager jksManager, boolean keyStoreContainsTrustMaterial,
+            PrivateKeyStrategy privateKeyStrategy, UnaryOperator<X509ExtendedTrustManager> trustManagerDecorator )
     {
         SSLContext sslContext = null;
         boolean    trust      = false;
@@ -138,7 +161,9 @@ public class SecurityHelper
             KeyStore keyMaterial   = jksManager.keystore();
             KeyStore trustMaterial = jksManager.truststore();
 
-            SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+            SSLContextBuilder sslContextBuilder = null == trustManagerDecorator ?
+                    SSLContexts.custom() :
+                    new DecoratingSslContextBuilder( trustManagerDecorator );
 
             if ( null != keyMaterial )
             {
@@ -172,6 +197,35 @@ public class SecurityHelper
         return sslContext;
     }
 
+    /**
+     * The SSLContextBuilder offers no access to the created trust managers, this builder replaces them before the
+     * context is initialized.
+     */
+    private static class DecoratingSslContextBuilder
+            extends SSLContextBuilder
+    {
+        private final UnaryOperator<X509ExtendedTrustManager> decorator;
+
+        DecoratingSslContextBuilder( UnaryOperator<X509ExtendedTrustManager> decorator )
+        {
+            this.decorator = decorator;
+        }
+
+        @Override
+        protected void initSSLContext( SSLContext sslContext, Collection<KeyManager> keyManagers,
+                Collection<TrustManager> trustManagers, SecureRandom secureRandom ) throws KeyManagementException
+        {
+            List<TrustManager> decorated = trustManagers
+                    .stream()
+                    .map( tm -> tm instanceof X509ExtendedTrustManager ?
+                            decorator.apply( (X509ExtendedTrustManager) tm ) :
+                            tm )
+                    .collect( Collectors.toList() );
+
+            super.initSSLContext( sslContext, keyManagers, decorated, secureRandom );
+        }
+    }
+
     public static String getX509PemString( Certificate cert )
     {
         Base64.Encoder encoder   = Base64.getEncoder();
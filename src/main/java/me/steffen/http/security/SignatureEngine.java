@@ -0,0 +1,208 @@
+package me.steffen.http.security;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Signs data with the private keys of a {@link JksManager} without touching the keystore for every signature.
+ * <ul>
+ * <li>the unlocked private key and the signature algorithm are cached per alias</li>
+ * <li>every thread keeps its own {@link Signature} instance per alias, already initialized with the key. After
+ * {@link Signature#sign()} the instance is ready for the next signature with the same key.</li>
+ * </ul>
+ * The algorithm is derived from the private key (not from the certificate, its signature algorithm is the one of the
+ * issuing CA) and the digest: the configured digest or, if not set, SHA-256 for RSA keys and the digest matching the
+ * curve size for EC keys (P-256: SHA-256, P-384: SHA-384, P-521: SHA-512). ECDSA signatures are created in the IEEE
+ * P1363 format (r||s) as required by JWS and HTTP message signatures.
+ */
+public class SignatureEngine
+{
+    private static final Logger LOGGER = LogManager.getLogger( SignatureEngine.class );
+
+    private final JksManager jksManager;
+
+    private final String keyPassword;
+
+    private final String digest;
+
+    private final Map<String, PrivateKey> keys = new ConcurrentHashMap<>();
+
+    private final Map<String, String> algorithms = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Map<String, PooledSignature>> signatures = ThreadLocal.withInitial( HashMap::new );
+
+    private volatile long generation = 0;
+
+    private static class PooledSignature
+    {
+        private final Signature signature;
+        private final long      generation;
+
+        private PooledSignature( Signature signature, long generation )
+        {
+            this.signature = signature;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * @param jksManager  the key source
+     * @param keyPassword password for the keys, null uses the keystoreKeySecret
+     */
+    public SignatureEngine( JksManager jksManager, String keyPassword )
+    {
+        this( jksManager, keyPassword, null );
+    }
+
+    /**
+     * @param jksManager  the key source
+     * @param keyPassword password for the keys, null uses the keystoreKeySecret
+     * @param digest      the digest of the signatures (i.e. SHA-256), null selects it by the key
+     */
+    public SignatureEngine( JksManager jksManager, String keyPassword, String digest )
+    {
+        this.jksManager = jksManager;
+        this.keyPassword = keyPassword;
+        this.digest = digest;
+    }
+
+    /**
+     * @param alias the key alias
+     * @return the cached private key or null if the keystore doesn't contain a usable key
+     */
+    public PrivateKey getPrivateKey( String alias )
+    {
+        return keys.computeIfAbsent( alias, a -> jksManager.getPrivateKey( a, keyPassword ) );
+    }
+
+    /**
+     * @param alias the key alias
+     * @return the java signature algorithm used for this alias
+     */
+    public String getAlgorithm( String alias )
+    {
+        return algorithms.computeIfAbsent( alias, a -> resolveAlgorithm( getPrivateKey( a ) ) );
+    }
+
+    private static String keyDigest( PrivateKey key )
+    {
+        if ( key instanceof ECPrivateKey )
+        {
+            int bits = ( (ECPrivateKey) key ).getParams().getOrder().bitLength();
+            return bits > 384 ? "SHA-512" : bits > 256 ? "SHA-384" : "SHA-256";
+        }
+
+        return "SHA-256";
+    }
+
+    private String resolveAlgorithm( PrivateKey key )
+    {
+        String keyAlgorithm = null == key ? "RSA" : key.getAlgorithm();
+        String d            = ( null == digest ? keyDigest( key ) : digest )
+                .replace( "-", "" )
+                .toUpperCase( Locale.ROOT );
+
+        switch ( keyAlgorithm )
+        {
+            case "EC":
+                return d + "withECDSAinP1363Format";
+            case "DSA":
+                return d + "withDSA";
+            default:
+                return d + "with" + keyAlgorithm;
+        }
+    }
+
+    /**
+     * @param javaAlgorithm the java algorithm name
+     * @return the algorithm name of the HTTP signature algorithm registry (RFC 9421) or null if not registered
+     */
+    public static String getHttpSignatureAlgorithm( String javaAlgorithm )
+    {
+        switch ( javaAlgorithm )
+        {
+            case "SHA256withRSA":
+                return "rsa-v1_5-sha256";
+            case "SHA256withECDSAinP1363Format":
+                return "ecdsa-p256-sha256";
+            case "SHA384withECDSAinP1363Format":
+                return "ecdsa-p384-sha384";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the thread local signature instance for the alias, initialized for signing. The caller must finish
+     * the signature with {@link Signature#sign()} before the next call for the same alias in this thread.
+     *
+     * @param alias the key alias
+     * @return the signature instance
+     * @throws GeneralSecurityException if the key doesn't exist or the algorithm isn't available
+     */
+    public Signature getSignature( String alias ) throws GeneralSecurityException
+    {
+        Map<String, PooledSignature> pool = signatures.get();
+        PooledSignature              ps   = pool.get( alias );
+        if ( null != ps && ps.generation == generation )
+        {
+            return ps.signature;
+        }
+
+        PrivateKey key = getPrivateKey( alias );
+        if ( null == key )
+        {
+            throw new InvalidKeyException( "no private key found for alias '" + alias + "'" );
+        }
+
+        Signature s = Signature.getInstance( getAlgorithm( alias ) );
+        s.initSign( key );
+        pool.put( alias, new PooledSignature( s, generation ) );
+        LOGGER.debug( "created {} signature instance for alias '{}' in thread {}", s.getAlgorithm(), alias,
+                Thread.currentThread().getName() );
+
+        return s;
+    }
+
+    /**
+     * @param alias the key alias
+     * @param data  the data to sign
+     * @return the signature
+     * @throws GeneralSecurityException if the key doesn't exist or the algorithm isn't available
+     */
+    public byte[] sign( String alias, byte[] data ) throws GeneralSecurityException
+    {
+        Signature s = getSignature( alias );
+        try
+        {
+            s.update( data );
+            return s.sign();
+        }
+        catch ( GeneralSecurityException | RuntimeException e )
+        {
+            // the instance is in an undefined state
+            signatures.get().remove( alias );
+            throw e;
+        }
+    }
+
+    /**
+     * forget all cached keys and signature instances, i.e. after the keystore was changed
+     */
+    public synchronized void clear()
+    {
+        keys.clear();
+        algorithms.clear();
+        generation++;
+    }
+}